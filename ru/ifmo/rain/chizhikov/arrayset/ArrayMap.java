@@ -0,0 +1,294 @@
+package ru.ifmo.rain.chizhikov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable sorted map, backed by a sorted array of keys and a parallel array of values.
+ * <p>
+ * Navigation is a binary search over keys, as in {@link ArraySet}. Views, returned by
+ * {@link #subMap}, {@link #headMap}, {@link #tailMap} and {@link #descendingMap}, share both
+ * arrays and only keep bounds and direction, so any chain of views is created in constant time.
+ */
+public class ArrayMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+    private final Object[] keys;
+    private final Object[] values;
+    private final int from;
+    private final int to;
+    private final boolean reversed;
+    private final Comparator<? super K> comparator;
+
+    public ArrayMap() {
+        this(new Object[0], new Object[0], 0, 0, false, null);
+    }
+
+    public ArrayMap(Map<? extends K, ? extends V> map) {
+        this(map, null);
+    }
+
+    /**
+     * Creates map of entries of specified map, ordered by specified comparator.
+     * If some keys are equal by comparator, the first of them is kept with the value of the last one,
+     * as {@link TreeMap#putAll} does.
+     *
+     * @param map        entries of map
+     * @param comparator order of keys or {@code null} for natural order
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayMap(Map<? extends K, ? extends V> map, Comparator<? super K> comparator) {
+        Map.Entry<K, V>[] entries = map.entrySet().toArray((Map.Entry<K, V>[]) new Map.Entry<?, ?>[0]);
+        Comparator<? super K> order = comparator != null ? comparator : (Comparator<? super K>) Comparator.naturalOrder();
+        if (!(map instanceof SortedMap && Objects.equals(((SortedMap<?, ?>) map).comparator(), comparator))) {
+            Arrays.sort(entries, (a, b) -> order.compare(a.getKey(), b.getKey()));
+        }
+
+        Object[] keys = new Object[entries.length];
+        Object[] values = new Object[entries.length];
+        int size = 0;
+        for (Map.Entry<K, V> entry : entries) {
+            if (size == 0 || order.compare((K) keys[size - 1], entry.getKey()) != 0) {
+                keys[size++] = Objects.requireNonNull(entry.getKey());
+            }
+            values[size - 1] = entry.getValue();
+        }
+
+        this.keys = size == keys.length ? keys : Arrays.copyOf(keys, size);
+        this.values = size == values.length ? values : Arrays.copyOf(values, size);
+        this.from = 0;
+        this.to = size;
+        this.reversed = false;
+        this.comparator = comparator;
+    }
+
+    private ArrayMap(Object[] keys, Object[] values, int from, int to, boolean reversed, Comparator<? super K> comparator) {
+        this.keys = keys;
+        this.values = values;
+        this.from = from;
+        this.to = to;
+        this.reversed = reversed;
+        this.comparator = comparator;
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return entryAt(reversed ? higherIndex(key, false) : lowerIndex(key, false));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyAt(reversed ? higherIndex(key, false) : lowerIndex(key, false));
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return entryAt(reversed ? higherIndex(key, true) : lowerIndex(key, true));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyAt(reversed ? higherIndex(key, true) : lowerIndex(key, true));
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return entryAt(reversed ? lowerIndex(key, true) : higherIndex(key, true));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyAt(reversed ? lowerIndex(key, true) : higherIndex(key, true));
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return entryAt(reversed ? lowerIndex(key, false) : higherIndex(key, false));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyAt(reversed ? lowerIndex(key, false) : higherIndex(key, false));
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return entryAt(reversed ? to - 1 : from);
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return entryAt(reversed ? from : to - 1);
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new ArrayMap<>(keys, values, from, to, !reversed, comparator);
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new ArraySet<>(keys, from, to, reversed, comparator, null);
+    }
+
+    @Override
+    public NavigableSet<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return navigableKeySet().descendingSet();
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return reversed
+                ? view(higherIndex(toKey, toInclusive), lowerIndex(fromKey, fromInclusive) + 1)
+                : view(higherIndex(fromKey, fromInclusive), lowerIndex(toKey, toInclusive) + 1);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return reversed
+                ? view(higherIndex(toKey, inclusive), to)
+                : view(from, lowerIndex(toKey, inclusive) + 1);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return reversed
+                ? view(from, lowerIndex(fromKey, inclusive) + 1)
+                : view(higherIndex(fromKey, inclusive), to);
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return reversed ? Collections.reverseOrder(comparator) : comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        Comparator<? super K> comparator = comparator();
+        int compared = comparator != null
+                ? comparator.compare(fromKey, toKey)
+                : ((Comparable<? super K>) fromKey).compareTo(toKey);
+        if (compared > 0) {
+            throw new IllegalArgumentException("ERROR: Invalid arguments.");
+        }
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    @Override
+    public K firstKey() {
+        checkNotEmpty();
+        return keyAt(reversed ? to - 1 : from);
+    }
+
+    @Override
+    public K lastKey() {
+        checkNotEmpty();
+        return keyAt(reversed ? from : to - 1);
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean containsKey(Object key) {
+        return search((K) Objects.requireNonNull(key)) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        int i = search((K) Objects.requireNonNull(key));
+        return i >= 0 ? (V) values[i] : null;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<>() {
+                    private int i = reversed ? to - 1 : from;
+
+                    @Override
+                    public boolean hasNext() {
+                        return reversed ? i >= from : i < to;
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return entryAt(reversed ? i-- : i++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+
+    private ArrayMap<K, V> view(int fromIndex, int toIndex) {
+        return new ArrayMap<>(keys, values, fromIndex, Math.max(fromIndex, toIndex), reversed, comparator);
+    }
+
+    private void checkNotEmpty() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int search(K key) {
+        return Arrays.binarySearch((K[]) keys, from, to, key, comparator);
+    }
+
+    private int lowerIndex(K key, boolean inclusive) {
+        int i = search(Objects.requireNonNull(key));
+        return i >= 0 ? (inclusive ? i : i - 1) : -(i + 1) - 1;
+    }
+
+    private int higherIndex(K key, boolean inclusive) {
+        int i = search(Objects.requireNonNull(key));
+        return i >= 0 ? (inclusive ? i : i + 1) : -(i + 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private K keyAt(int i) {
+        return from <= i && i < to ? (K) keys[i] : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<K, V> entryAt(int i) {
+        return from <= i && i < to ? new SimpleImmutableEntry<>((K) keys[i], (V) values[i]) : null;
+    }
+}
@@ -1,63 +1,161 @@
 package ru.ifmo.rain.chizhikov.arrayset;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
-    private final List<T> data;
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+
+    private final Object[] elements;
+    private final int from;
+    private final int to;
+    private final boolean reversed;
     private final Comparator<? super T> comparator;
+    private final EytzingerIndex<T> index;
 
     public ArraySet() {
-        data = Collections.emptyList();
-        comparator = null;
-    }
-
-    private ArraySet(Comparator<? super T> comparator) {
-        this.data = Collections.emptyList();
-        this.comparator = comparator;
+        this(new Object[0], 0, 0, false, null, null);
     }
 
 
     public ArraySet(Collection<? extends T> collection) {
-        data = new ArrayList<>(new TreeSet<>(collection));
-        comparator = null;
+        this(collection, null);
     }
 
 
     public ArraySet(Collection<? extends T> collection, Comparator<? super T> comparator) {
-        SortedSet<T> newSet = new TreeSet<>(comparator);
+        this.elements = toSortedArray(collection, comparator);
+        this.from = 0;
+        this.to = elements.length;
+        this.reversed = false;
         this.comparator = comparator;
-        newSet.addAll(collection);
-        data = new ArrayList<>(newSet);
+        this.index = null;
     }
 
 
-    private ArraySet(List<T> data, Comparator<? super T> comparator) {
-        this.data = data;
+    ArraySet(Object[] elements, int from, int to, boolean reversed,
+             Comparator<? super T> comparator, EytzingerIndex<T> index) {
+        this.elements = elements;
+        this.from = from;
+        this.to = to;
+        this.reversed = reversed;
         this.comparator = comparator;
+        this.index = index;
+    }
 
-        if (data instanceof ReversedList) {
-            ((ReversedList) data).reverse();
+    /**
+     * Returns set with the same elements, which are additionally laid out in Eytzinger order.
+     * It speeds up searches in sets, which are much larger than CPU cache, at the cost of
+     * a copy of references and an {@code int} per element. Views of the returned set share its index.
+     *
+     * @return set with Eytzinger index
+     */
+    public ArraySet<T> withEytzingerLayout() {
+        if (index != null) {
+            return this;
         }
+        return new ArraySet<>(elements, from, to, reversed, comparator, new EytzingerIndex<>(elements, from, to, order()));
+    }
+
+    /**
+     * Returns set of elements, which are in this set or in {@code other}.
+     * Sets are merged in linear time, {@code other} is sorted first, unless it is a sorted set
+     * with the same order as this set.
+     *
+     * @param other elements to add
+     * @return union of sets, ordered as this set
+     */
+    public ArraySet<T> union(Collection<? extends T> other) {
+        return merge(other, SortedMerge.Operation.UNION);
+    }
+
+    /**
+     * Returns set of elements, which are both in this set and in {@code other}.
+     *
+     * @param other elements to keep
+     * @return intersection of sets, ordered as this set
+     * @see #union(Collection)
+     */
+    public ArraySet<T> intersect(Collection<? extends T> other) {
+        return merge(other, SortedMerge.Operation.INTERSECTION);
+    }
+
+    /**
+     * Returns set of elements of this set, which are not in {@code other}.
+     *
+     * @param other elements to remove
+     * @return difference of sets, ordered as this set
+     * @see #union(Collection)
+     */
+    public ArraySet<T> difference(Collection<? extends T> other) {
+        return merge(other, SortedMerge.Operation.DIFFERENCE);
+    }
+
+    /**
+     * Returns set of elements, which are in exactly one of this set and {@code other}.
+     *
+     * @param other elements to add or remove
+     * @return symmetric difference of sets, ordered as this set
+     * @see #union(Collection)
+     */
+    public ArraySet<T> symmetricDifference(Collection<? extends T> other) {
+        return merge(other, SortedMerge.Operation.SYMMETRIC_DIFFERENCE);
+    }
+
+    /**
+     * Finds {@link #floor(Object) floor} of every query in one pass over the set.
+     * Every next query is searched by galloping from the position of the previous one.
+     *
+     * @param queries elements to search for, sorted in order of this set
+     * @param result  array to store floors to, at the same indices as queries
+     * @throws IllegalArgumentException if queries are not sorted or result is too short
+     */
+    public void floor(T[] queries, T[] result) {
+        lookup(queries, result, null, true);
+    }
+
+    /**
+     * Finds {@link #ceiling(Object) ceiling} of every query in one pass over the set.
+     *
+     * @param queries elements to search for, sorted in order of this set
+     * @param result  array to store ceilings to, at the same indices as queries
+     * @throws IllegalArgumentException if queries are not sorted or result is too short
+     * @see #floor(Object[], Object[])
+     */
+    public void ceiling(T[] queries, T[] result) {
+        lookup(queries, result, null, false);
+    }
+
+    /**
+     * Checks presence of every query in one pass over the set.
+     *
+     * @param queries elements to search for, sorted in order of this set
+     * @param result  array to store results to, at the same indices as queries
+     * @throws IllegalArgumentException if queries are not sorted or result is too short
+     * @see #floor(Object[], Object[])
+     */
+    public void contains(T[] queries, boolean[] result) {
+        lookup(queries, null, result, false);
     }
 
     @Override
     public T lower(T t) {
-        return getElementInSet(t, -1, -1);
+        return elementAt(reversed ? higherIndex(t, false) : lowerIndex(t, false));
     }
 
     @Override
     public T floor(T t) {
-        return getElementInSet(t, 0, -1);
+        return elementAt(reversed ? higherIndex(t, true) : lowerIndex(t, true));
     }
 
     @Override
     public T ceiling(T t) {
-        return getElementInSet(t, 0, 0);
+        return elementAt(reversed ? lowerIndex(t, true) : higherIndex(t, true));
     }
 
     @Override
     public T higher(T t) {
-        return getElementInSet(t, 1, 0);
+        return elementAt(reversed ? lowerIndex(t, false) : higherIndex(t, false));
     }
 
     @Override
@@ -72,12 +170,33 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
 
     @Override
     public Iterator<T> iterator() {
-        return Collections.unmodifiableList(data).iterator();
+        return new Iterator<>() {
+            private int i = reversed ? to - 1 : from;
+
+            @Override
+            public boolean hasNext() {
+                return reversed ? i >= from : i < to;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (T) elements[reversed ? i-- : i++];
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return new ArraySpliterator<>(elements, from, to, reversed, comparator());
     }
 
     @Override
     public NavigableSet<T> descendingSet() {
-        return new ArraySet<>(new ReversedList<>(data), Collections.reverseOrder(comparator));
+        return new ArraySet<>(elements, from, to, !reversed, comparator, index);
     }
 
     @Override
@@ -87,31 +206,33 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
 
     @Override
     public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
-        int fromIndex = fromInclusive ? indexOf(fromElement, 0, 0) : indexOf(fromElement, 1, 0);
-        int toIndex = toInclusive ? indexOf(toElement, 0, -1) : indexOf(toElement, -1, -1);
-        if (fromIndex > toIndex || fromIndex == -1 || toIndex == -1) {
-            return new ArraySet<>(comparator);
-        }
-        return new ArraySet<>(data.subList(fromIndex, toIndex + 1), comparator);
+        return reversed
+                ? view(higherIndex(toElement, toInclusive), lowerIndex(fromElement, fromInclusive) + 1)
+                : view(higherIndex(fromElement, fromInclusive), lowerIndex(toElement, toInclusive) + 1);
     }
 
     @Override
     public NavigableSet<T> headSet(T toElement, boolean inclusive) {
-        return (data.isEmpty()) ? new ArraySet<>(comparator) : subSet(first(), true, toElement, inclusive);
+        return reversed
+                ? view(higherIndex(toElement, inclusive), to)
+                : view(from, lowerIndex(toElement, inclusive) + 1);
     }
 
     @Override
     public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
-        return (data.isEmpty()) ? new ArraySet<>(comparator) : subSet(fromElement, inclusive, last(), true);
+        return reversed
+                ? view(from, lowerIndex(fromElement, inclusive) + 1)
+                : view(higherIndex(fromElement, inclusive), to);
     }
 
     @Override
     public Comparator<? super T> comparator() {
-        return comparator;
+        return reversed ? Collections.reverseOrder(comparator) : comparator;
     }
 
     @Override
     public SortedSet<T> subSet(T fromElement, T toElement) {
+        Comparator<? super T> comparator = comparator();
         if (comparator != null) {
             if (comparator.compare(fromElement, toElement) > 0) {
                 throw new IllegalArgumentException("ERROR: Invalid arguments.");
@@ -139,70 +260,227 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     @Override
     public T first() {
         checkNotEmpty();
-        return data.get(0);
+        return elementAt(reversed ? to - 1 : from);
     }
 
     @Override
     public T last() {
         checkNotEmpty();
-        return data.get(size() - 1);
+        return elementAt(reversed ? from : to - 1);
     }
 
     @Override
     public int size() {
-        return data.size();
+        return to - from;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] result = Arrays.copyOfRange(elements, from, to);
+        if (reversed) {
+            Collections.reverse(Arrays.asList(result));
+        }
+        return result;
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public boolean contains(Object o) {
-        return Collections.binarySearch(data, (T) Objects.requireNonNull(o), comparator) >= 0;
+        int i = search((T) Objects.requireNonNull(o));
+        return from <= i && i < to;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Object[] toSortedArray(Collection<? extends T> collection, Comparator<? super T> comparator) {
+        T[] elements = (T[]) collection.toArray();
+        for (T element : elements) {
+            Objects.requireNonNull(element);
+        }
+        Comparator<? super T> order = comparator != null ? comparator : (Comparator<? super T>) Comparator.naturalOrder();
+
+        if (collection instanceof SortedSet && Objects.equals(((SortedSet<?>) collection).comparator(), comparator)) {
+            return elements;
+        }
+
+        if (!isSorted(elements, order)) {
+            if (elements.length >= PARALLEL_SORT_THRESHOLD) {
+                Arrays.parallelSort(elements, order);
+            } else {
+                Arrays.sort(elements, order);
+            }
+        }
+
+        int size = 0;
+        for (T element : elements) {
+            if (size == 0 || order.compare(elements[size - 1], element) != 0) {
+                elements[size++] = element;
+            }
+        }
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
+    }
+
+    private static <T> boolean isSorted(T[] elements, Comparator<? super T> order) {
+        for (int i = 1; i < elements.length; ++i) {
+            if (order.compare(elements[i - 1], elements[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private boolean indexValidation(int i) {
-        return (i >= 0 && i < size());
+    private ArraySet<T> merge(Collection<? extends T> other, SortedMerge.Operation operation) {
+        Comparator<? super T> comparator = comparator();
+        Object[] own = reversed ? toArray() : elements;
+        int ownFrom = reversed ? 0 : from;
+        Object[] sorted = toSortedArray(other, comparator);
+        Object[] result = SortedMerge.merge(own, ownFrom, ownFrom + size(), sorted, 0, sorted.length,
+                reversed ? Collections.reverseOrder(order()) : order(), operation);
+        return new ArraySet<>(result, 0, result.length, false, comparator, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void lookup(T[] queries, T[] found, boolean[] present, boolean floor) {
+        int length = queries.length;
+        if ((found != null ? found.length : present.length) < length) {
+            throw new IllegalArgumentException("ERROR: Result array is shorter than queries.");
+        }
+
+        Comparator<? super T> order = order();
+        int position = from;
+        for (int k = 0; k < length; ++k) {
+            int q = reversed ? length - 1 - k : k;
+            T query = Objects.requireNonNull(queries[q]);
+            if (k > 0 && order.compare(queries[reversed ? q + 1 : q - 1], query) > 0) {
+                throw new IllegalArgumentException("ERROR: Queries are not sorted.");
+            }
+
+            position = SortedMerge.gallop(elements, position, to, query, order);
+            boolean equal = position < to && order.compare((T) elements[position], query) == 0;
+            if (present != null) {
+                present[q] = equal;
+            } else if (floor != reversed) {
+                found[q] = equal ? (T) elements[position] : position > from ? (T) elements[position - 1] : null;
+            } else {
+                found[q] = position < to ? (T) elements[position] : null;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Comparator<? super T> order() {
+        return comparator != null ? comparator : (Comparator<? super T>) Comparator.naturalOrder();
+    }
+
+    private ArraySet<T> view(int fromIndex, int toIndex) {
+        return new ArraySet<>(elements, fromIndex, Math.max(fromIndex, toIndex), reversed, comparator, index);
     }
 
     private void checkNotEmpty() {
-        if (data.isEmpty()) {
+        if (from == to) {
             throw new NoSuchElementException();
         }
     }
 
-    private int indexOf(T element, int includeFound, int includeNotFound) {
-        int i = Collections.binarySearch(data, Objects.requireNonNull(element), comparator);
-        if (i < 0) {
-            i = -(i + 1);
-            return indexValidation(i + includeNotFound) ? (i + includeNotFound) : -1;
-        }
-        return indexValidation(i + includeFound) ? (i + includeFound) : -1;
+    @SuppressWarnings("unchecked")
+    private int search(T element) {
+        return index != null
+                ? index.search(element)
+                : Arrays.binarySearch((T[]) elements, from, to, element, comparator);
+    }
+
+    private int lowerIndex(T element, boolean inclusive) {
+        int i = search(Objects.requireNonNull(element));
+        i = i >= 0 ? (inclusive ? i : i - 1) : -(i + 1) - 1;
+        return Math.max(from - 1, Math.min(i, to - 1));
     }
 
-    private T getElementInSet(T element, int includeFound, int includeNotFound) {
-        int i = indexOf(element, includeFound, includeNotFound);
-        return indexValidation(i) ? data.get(i) : null;
+    private int higherIndex(T element, boolean inclusive) {
+        int i = search(Objects.requireNonNull(element));
+        i = i >= 0 ? (inclusive ? i : i + 1) : -(i + 1);
+        return Math.min(to, Math.max(i, from));
     }
 
-    class ReversedList<E> extends AbstractList<E> implements RandomAccess {
-        private List<E> data;
-        private boolean isReversed;
+    @SuppressWarnings("unchecked")
+    private T elementAt(int i) {
+        return from <= i && i < to ? (T) elements[i] : null;
+    }
 
-        private ReversedList(List<E> data) {
-            this.data = data;
+    private static class ArraySpliterator<T> implements Spliterator<T> {
+        private static final int CHARACTERISTICS = ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+
+        private final Object[] elements;
+        private int from;
+        private int to;
+        private final boolean reversed;
+        private final Comparator<? super T> comparator;
+
+        private ArraySpliterator(Object[] elements, int from, int to, boolean reversed, Comparator<? super T> comparator) {
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+            this.reversed = reversed;
+            this.comparator = comparator;
         }
 
+        @SuppressWarnings("unchecked")
         @Override
-        public E get(int index) {
-            return isReversed ? data.get(size() - 1 - index) : data.get(index);
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            if (from == to) {
+                return false;
+            }
+            action.accept((T) elements[reversed ? --to : from++]);
+            return true;
         }
 
+        @SuppressWarnings("unchecked")
         @Override
-        public int size() {
-            return data.size();
+        public void forEachRemaining(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            int i = from;
+            int j = to;
+            from = to;
+            if (reversed) {
+                while (j > i) {
+                    action.accept((T) elements[--j]);
+                }
+            } else {
+                while (i < j) {
+                    action.accept((T) elements[i++]);
+                }
+            }
         }
 
-        void reverse() {
-            isReversed = !isReversed;
+        @Override
+        public Spliterator<T> trySplit() {
+            int middle = (from + to) >>> 1;
+            if (middle == from) {
+                return null;
+            }
+            if (reversed) {
+                Spliterator<T> prefix = new ArraySpliterator<>(elements, middle, to, true, comparator);
+                to = middle;
+                return prefix;
+            } else {
+                Spliterator<T> prefix = new ArraySpliterator<>(elements, from, middle, false, comparator);
+                from = middle;
+                return prefix;
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return CHARACTERISTICS;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator;
         }
     }
 }
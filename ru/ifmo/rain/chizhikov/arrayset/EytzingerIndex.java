@@ -0,0 +1,63 @@
+package ru.ifmo.rain.chizhikov.arrayset;
+
+import java.util.Comparator;
+
+/**
+ * Read-optimized copy of a range of a sorted array in Eytzinger (breadth-first) order.
+ * <p>
+ * Element {@code k} has children {@code 2k} and {@code 2k + 1}, so first levels of search
+ * share a few cache lines and every next probe is at a predictable address, instead of
+ * jumping over the whole array as binary search does.
+ */
+class EytzingerIndex<T> {
+    private final Object[] tree;
+    private final int[] ranks;
+    private final int to;
+    private final Comparator<? super T> order;
+
+    /**
+     * Builds index of specified range of elements.
+     *
+     * @param sorted distinct elements, sorted by {@code order}
+     * @param from   first index of range, inclusive
+     * @param to     last index of range, exclusive
+     * @param order  order of elements
+     */
+    EytzingerIndex(Object[] sorted, int from, int to, Comparator<? super T> order) {
+        this.tree = new Object[to - from + 1];
+        this.ranks = new int[to - from + 1];
+        this.to = to;
+        this.order = order;
+        fill(sorted, from, 1);
+    }
+
+    private int fill(Object[] sorted, int rank, int k) {
+        if (k < tree.length) {
+            rank = fill(sorted, rank, 2 * k);
+            tree[k] = sorted[rank];
+            ranks[k] = rank++;
+            rank = fill(sorted, rank, 2 * k + 1);
+        }
+        return rank;
+    }
+
+    /**
+     * Searches for element, as {@link java.util.Arrays#binarySearch} on the indexed range does.
+     *
+     * @param element element to search for
+     * @return index of element in array, if it is present; otherwise {@code -(insertion point) - 1}
+     */
+    @SuppressWarnings("unchecked")
+    int search(T element) {
+        int k = 1;
+        while (k < tree.length) {
+            k = 2 * k + (order.compare((T) tree[k], element) < 0 ? 1 : 0);
+        }
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+
+        if (k == 0) {
+            return -to - 1;
+        }
+        return order.compare((T) tree[k], element) == 0 ? ranks[k] : -ranks[k] - 1;
+    }
+}
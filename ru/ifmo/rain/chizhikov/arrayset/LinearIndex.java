@@ -0,0 +1,145 @@
+package ru.ifmo.rain.chizhikov.arrayset;
+
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Learned index of a sorted array of distinct numbers.
+ * <p>
+ * Array is covered by linear segments, every one predicting position of a value with error
+ * at most {@code maxError}. Lookup finds segment by its first value, predicts position and
+ * runs binary search in the small window around it. If the prediction misses (it can't for
+ * values of the array, but rounding may shift it for other values), lookup falls back to
+ * binary search over the whole array.
+ */
+class LinearIndex {
+    private static final int MIN_SEGMENT_LENGTH = 8;
+
+    private final long[] firstValues;
+    private final int[] starts;
+    private final double[] slopes;
+    private final int size;
+    private final int window;
+
+    private LinearIndex(long[] firstValues, int[] starts, double[] slopes, int size, int maxError) {
+        this.firstValues = firstValues;
+        this.starts = starts;
+        this.slopes = slopes;
+        this.size = size;
+        this.window = maxError + 1;
+    }
+
+    /**
+     * Builds index of sorted distinct values.
+     *
+     * @param size     number of values
+     * @param values   value by its index
+     * @param maxError maximal error of prediction for values of array
+     * @return built index or {@code null} if values are too skewed to be covered by long segments
+     */
+    static LinearIndex build(int size, IntToLongFunction values, int maxError) {
+        if (maxError < 0) {
+            throw new IllegalArgumentException("ERROR: Maximal error must be non-negative.");
+        }
+
+        int capacity = Math.max(1, size / MIN_SEGMENT_LENGTH);
+        long[] firstValues = new long[capacity];
+        int[] starts = new int[capacity];
+        double[] slopes = new double[capacity];
+        int segments = 0;
+
+        int start = 0;
+        while (start < size) {
+            long first = values.applyAsLong(start);
+            double low = Double.NEGATIVE_INFINITY;
+            double high = Double.POSITIVE_INFINITY;
+            int end = start + 1;
+            for (; end < size; ++end) {
+                double distance = (double) values.applyAsLong(end) - first;
+                double newLow = Math.max(low, (end - start - maxError) / distance);
+                double newHigh = Math.min(high, (end - start + maxError) / distance);
+                if (newLow > newHigh) {
+                    break;
+                }
+                low = newLow;
+                high = newHigh;
+            }
+
+            if (segments == capacity) {
+                return null;
+            }
+            firstValues[segments] = first;
+            starts[segments] = start;
+            slopes[segments] = end - start == 1 ? 0 : (low + high) / 2;
+            ++segments;
+            start = end;
+        }
+
+        return new LinearIndex(Arrays.copyOf(firstValues, segments), Arrays.copyOf(starts, segments),
+                Arrays.copyOf(slopes, segments), size, maxError);
+    }
+
+    /**
+     * Searches for value, as {@link Arrays#binarySearch(int[], int)} does.
+     *
+     * @param array indexed array
+     * @param value value to search for
+     * @return index of value, if it is present; otherwise {@code -(insertion point) - 1}
+     */
+    int search(int[] array, int value) {
+        int segment = segment(value);
+        if (segment < 0) {
+            return -1;
+        }
+        int predicted = predict(segment, value);
+        int low = Math.max(starts[segment], predicted - window);
+        int high = Math.min(end(segment), predicted + window + 1);
+
+        int i = Arrays.binarySearch(array, low, high, value);
+        int insertion = -(i + 1);
+        if (i >= 0 || (insertion > low || low == 0 || array[low - 1] < value)
+                && (insertion < high || high == size || array[high] > value)) {
+            return i;
+        }
+        return Arrays.binarySearch(array, 0, size, value);
+    }
+
+    /**
+     * Searches for value, as {@link Arrays#binarySearch(long[], long)} does.
+     *
+     * @param array indexed array
+     * @param value value to search for
+     * @return index of value, if it is present; otherwise {@code -(insertion point) - 1}
+     */
+    int search(long[] array, long value) {
+        int segment = segment(value);
+        if (segment < 0) {
+            return -1;
+        }
+        int predicted = predict(segment, value);
+        int low = Math.max(starts[segment], predicted - window);
+        int high = Math.min(end(segment), predicted + window + 1);
+
+        int i = Arrays.binarySearch(array, low, high, value);
+        int insertion = -(i + 1);
+        if (i >= 0 || (insertion > low || low == 0 || array[low - 1] < value)
+                && (insertion < high || high == size || array[high] > value)) {
+            return i;
+        }
+        return Arrays.binarySearch(array, 0, size, value);
+    }
+
+    private int segment(long value) {
+        int i = Arrays.binarySearch(firstValues, value);
+        return i >= 0 ? i : -(i + 1) - 1;
+    }
+
+    private int predict(int segment, long value) {
+        double offset = slopes[segment] * ((double) value - firstValues[segment]);
+        return starts[segment] + (int) Math.max(0, Math.min(offset, end(segment) - starts[segment]));
+    }
+
+    private int end(int segment) {
+        return segment + 1 < starts.length ? starts[segment + 1] : size;
+    }
+}
@@ -0,0 +1,284 @@
+package ru.ifmo.rain.chizhikov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable sorted set of {@code long} values, backed by a sorted array.
+ * <p>
+ * Primitive overloads of navigation methods search the array without boxing. Views, returned
+ * by {@link #subSet}, {@link #headSet}, {@link #tailSet} and {@link #descendingSet}, share the
+ * array of this set and only keep its bounds and direction.
+ */
+public class LongArraySet extends AbstractSet<Long> implements NavigableSet<Long> {
+    private final long[] elements;
+    private final int from;
+    private final int to;
+    private final boolean reversed;
+    private final LinearIndex index;
+
+    public LongArraySet() {
+        this(new long[0], 0, 0, false, null);
+    }
+
+    /**
+     * Creates set of specified values. Array is copied, duplicates are removed.
+     *
+     * @param elements values of set in any order
+     */
+    public LongArraySet(long... elements) {
+        long[] sorted = elements.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; ++i) {
+            if (i == 0 || sorted[i] != sorted[size - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        this.elements = size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+        this.from = 0;
+        this.to = size;
+        this.reversed = false;
+        this.index = null;
+    }
+
+    public LongArraySet(Collection<? extends Long> collection) {
+        this(collection.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    private LongArraySet(long[] elements, int from, int to, boolean reversed, LinearIndex index) {
+        this.elements = elements;
+        this.from = from;
+        this.to = to;
+        this.reversed = reversed;
+        this.index = index;
+    }
+
+    /**
+     * Returns set with the same values and a learned index: linear segments, which predict
+     * position of a value with bounded error, so lookup searches only a small window of the array.
+     * If values are too skewed to be covered by long segments, set without index is returned.
+     * Views of the returned set share its index.
+     *
+     * @param maxError maximal error of predicted position
+     * @return set with learned index
+     */
+    public LongArraySet withLearnedIndex(int maxError) {
+        LinearIndex index = LinearIndex.build(elements.length, i -> elements[i], maxError);
+        return new LongArraySet(elements, from, to, reversed, index != null ? index : this.index);
+    }
+
+    /**
+     * Returns whether set contains specified value.
+     *
+     * @param element value to search for
+     * @return {@code true} if value is in set
+     */
+    public boolean contains(long element) {
+        int i = search(element);
+        return from <= i && i < to;
+    }
+
+    /**
+     * Returns the greatest value of set, less than or equal to specified one, in order of set.
+     *
+     * @param element value to search for
+     * @param absent  value to return if there is no such value
+     * @return found value or {@code absent}
+     */
+    public long floor(long element, long absent) {
+        return valueAt(reversed ? higherIndex(element, true) : lowerIndex(element, true), absent);
+    }
+
+    /**
+     * Returns the least value of set, greater than or equal to specified one, in order of set.
+     *
+     * @param element value to search for
+     * @param absent  value to return if there is no such value
+     * @return found value or {@code absent}
+     */
+    public long ceiling(long element, long absent) {
+        return valueAt(reversed ? lowerIndex(element, true) : higherIndex(element, true), absent);
+    }
+
+    /**
+     * Returns the greatest value of set, strictly less than specified one, in order of set.
+     *
+     * @param element value to search for
+     * @param absent  value to return if there is no such value
+     * @return found value or {@code absent}
+     */
+    public long lower(long element, long absent) {
+        return valueAt(reversed ? higherIndex(element, false) : lowerIndex(element, false), absent);
+    }
+
+    /**
+     * Returns the least value of set, strictly greater than specified one, in order of set.
+     *
+     * @param element value to search for
+     * @param absent  value to return if there is no such value
+     * @return found value or {@code absent}
+     */
+    public long higher(long element, long absent) {
+        return valueAt(reversed ? lowerIndex(element, false) : higherIndex(element, false), absent);
+    }
+
+    @Override
+    public Long lower(Long element) {
+        return boxedAt(reversed ? higherIndex(element, false) : lowerIndex(element, false));
+    }
+
+    @Override
+    public Long floor(Long element) {
+        return boxedAt(reversed ? higherIndex(element, true) : lowerIndex(element, true));
+    }
+
+    @Override
+    public Long ceiling(Long element) {
+        return boxedAt(reversed ? lowerIndex(element, true) : higherIndex(element, true));
+    }
+
+    @Override
+    public Long higher(Long element) {
+        return boxedAt(reversed ? lowerIndex(element, false) : higherIndex(element, false));
+    }
+
+    @Override
+    public Long pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Long pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int index = reversed ? to - 1 : from;
+
+            @Override
+            public boolean hasNext() {
+                return reversed ? index >= from : index < to;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return elements[reversed ? index-- : index++];
+            }
+        };
+    }
+
+    @Override
+    public LongArraySet descendingSet() {
+        return new LongArraySet(elements, from, to, !reversed, index);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public LongArraySet subSet(Long fromElement, boolean fromInclusive, Long toElement, boolean toInclusive) {
+        if (reversed ? fromElement < toElement : fromElement > toElement) {
+            throw new IllegalArgumentException("ERROR: Invalid arguments.");
+        }
+        return reversed
+                ? view(higherIndex(toElement, toInclusive), lowerIndex(fromElement, fromInclusive) + 1)
+                : view(higherIndex(fromElement, fromInclusive), lowerIndex(toElement, toInclusive) + 1);
+    }
+
+    @Override
+    public LongArraySet headSet(Long toElement, boolean inclusive) {
+        return reversed
+                ? view(higherIndex(toElement, inclusive), to)
+                : view(from, lowerIndex(toElement, inclusive) + 1);
+    }
+
+    @Override
+    public LongArraySet tailSet(Long fromElement, boolean inclusive) {
+        return reversed
+                ? view(from, lowerIndex(fromElement, inclusive) + 1)
+                : view(higherIndex(fromElement, inclusive), to);
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        return reversed ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public LongArraySet subSet(Long fromElement, Long toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public LongArraySet headSet(Long toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public LongArraySet tailSet(Long fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Long first() {
+        checkNotEmpty();
+        return elements[reversed ? to - 1 : from];
+    }
+
+    @Override
+    public Long last() {
+        checkNotEmpty();
+        return elements[reversed ? from : to - 1];
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return Objects.requireNonNull(o) instanceof Long && contains((long) (Long) o);
+    }
+
+    private LongArraySet view(int fromIndex, int toIndex) {
+        return new LongArraySet(elements, fromIndex, Math.max(fromIndex, toIndex), reversed, index);
+    }
+
+    private void checkNotEmpty() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    private int search(long element) {
+        return index != null ? index.search(elements, element) : Arrays.binarySearch(elements, from, to, element);
+    }
+
+    private int lowerIndex(long element, boolean inclusive) {
+        int i = search(element);
+        i = i >= 0 ? (inclusive ? i : i - 1) : -(i + 1) - 1;
+        return Math.max(from - 1, Math.min(i, to - 1));
+    }
+
+    private int higherIndex(long element, boolean inclusive) {
+        int i = search(element);
+        i = i >= 0 ? (inclusive ? i : i + 1) : -(i + 1);
+        return Math.min(to, Math.max(i, from));
+    }
+
+    private long valueAt(int index, long absent) {
+        return from <= index && index < to ? elements[index] : absent;
+    }
+
+    private Long boxedAt(int index) {
+        return from <= index && index < to ? elements[index] : null;
+    }
+}
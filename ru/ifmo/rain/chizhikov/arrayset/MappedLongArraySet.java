@@ -0,0 +1,317 @@
+package ru.ifmo.rain.chizhikov.arrayset;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Read-only sorted set of {@code long} values, stored in a snapshot file and mapped into memory.
+ * <p>
+ * Snapshot consists of a header (magic number and number of values) and the values in ascending
+ * order, big-endian. Opening a snapshot maps the file without reading it, and all searches read
+ * values directly from the mapped memory. Views share the mapping, as views of {@link LongArraySet} do.
+ */
+public class MappedLongArraySet extends AbstractSet<Long> implements NavigableSet<Long> {
+    private static final int MAGIC = 0x4c415331;
+    private static final int HEADER_SIZE = 16;
+
+    private final LongBuffer elements;
+    private final int from;
+    private final int to;
+    private final boolean reversed;
+
+    private MappedLongArraySet(LongBuffer elements, int from, int to, boolean reversed) {
+        this.elements = elements;
+        this.from = from;
+        this.to = to;
+        this.reversed = reversed;
+    }
+
+    /**
+     * Writes snapshot of set. File is replaced atomically, if file system supports it.
+     * Values are written in ascending order, whatever the order of the set is.
+     *
+     * @param set  set to write
+     * @param file snapshot file
+     * @throws IOException if snapshot can't be written
+     */
+    public static void write(LongArraySet set, Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(0);
+                out.writeLong(set.size());
+                PrimitiveIterator.OfLong values = (set.comparator() == null ? set : set.descendingSet()).iterator();
+                while (values.hasNext()) {
+                    out.writeLong(values.nextLong());
+                }
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Opens snapshot, written by {@link #write}.
+     *
+     * @param file snapshot file
+     * @return set of values of snapshot
+     * @throws IOException if file can't be mapped or it is not a valid snapshot
+     */
+    public static MappedLongArraySet open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Invalid snapshot size: " + fileSize);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a snapshot: " + file);
+            }
+            long size = buffer.getLong(8);
+            if (size < 0 || size != (fileSize - HEADER_SIZE) / Long.BYTES) {
+                throw new IOException("Corrupted snapshot: " + file);
+            }
+            LongBuffer elements = buffer.position(HEADER_SIZE).slice().asLongBuffer();
+            return new MappedLongArraySet(elements, 0, (int) size, false);
+        }
+    }
+
+    /**
+     * Returns whether set contains specified value.
+     *
+     * @param element value to search for
+     * @return {@code true} if value is in set
+     */
+    public boolean contains(long element) {
+        return search(element) >= 0;
+    }
+
+    /**
+     * Returns the greatest value of set, less than or equal to specified one, in order of set.
+     *
+     * @param element value to search for
+     * @param absent  value to return if there is no such value
+     * @return found value or {@code absent}
+     */
+    public long floor(long element, long absent) {
+        return valueAt(reversed ? higherIndex(element, true) : lowerIndex(element, true), absent);
+    }
+
+    /**
+     * Returns the least value of set, greater than or equal to specified one, in order of set.
+     *
+     * @param element value to search for
+     * @param absent  value to return if there is no such value
+     * @return found value or {@code absent}
+     */
+    public long ceiling(long element, long absent) {
+        return valueAt(reversed ? lowerIndex(element, true) : higherIndex(element, true), absent);
+    }
+
+    /**
+     * Returns the greatest value of set, strictly less than specified one, in order of set.
+     *
+     * @param element value to search for
+     * @param absent  value to return if there is no such value
+     * @return found value or {@code absent}
+     */
+    public long lower(long element, long absent) {
+        return valueAt(reversed ? higherIndex(element, false) : lowerIndex(element, false), absent);
+    }
+
+    /**
+     * Returns the least value of set, strictly greater than specified one, in order of set.
+     *
+     * @param element value to search for
+     * @param absent  value to return if there is no such value
+     * @return found value or {@code absent}
+     */
+    public long higher(long element, long absent) {
+        return valueAt(reversed ? lowerIndex(element, false) : higherIndex(element, false), absent);
+    }
+
+    @Override
+    public Long lower(Long element) {
+        return boxedAt(reversed ? higherIndex(element, false) : lowerIndex(element, false));
+    }
+
+    @Override
+    public Long floor(Long element) {
+        return boxedAt(reversed ? higherIndex(element, true) : lowerIndex(element, true));
+    }
+
+    @Override
+    public Long ceiling(Long element) {
+        return boxedAt(reversed ? lowerIndex(element, true) : higherIndex(element, true));
+    }
+
+    @Override
+    public Long higher(Long element) {
+        return boxedAt(reversed ? lowerIndex(element, false) : higherIndex(element, false));
+    }
+
+    @Override
+    public Long pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Long pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int index = reversed ? to - 1 : from;
+
+            @Override
+            public boolean hasNext() {
+                return reversed ? index >= from : index < to;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return elements.get(reversed ? index-- : index++);
+            }
+        };
+    }
+
+    @Override
+    public MappedLongArraySet descendingSet() {
+        return new MappedLongArraySet(elements, from, to, !reversed);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public MappedLongArraySet subSet(Long fromElement, boolean fromInclusive, Long toElement, boolean toInclusive) {
+        if (reversed ? fromElement < toElement : fromElement > toElement) {
+            throw new IllegalArgumentException("ERROR: Invalid arguments.");
+        }
+        return reversed
+                ? view(higherIndex(toElement, toInclusive), lowerIndex(fromElement, fromInclusive) + 1)
+                : view(higherIndex(fromElement, fromInclusive), lowerIndex(toElement, toInclusive) + 1);
+    }
+
+    @Override
+    public MappedLongArraySet headSet(Long toElement, boolean inclusive) {
+        return reversed
+                ? view(higherIndex(toElement, inclusive), to)
+                : view(from, lowerIndex(toElement, inclusive) + 1);
+    }
+
+    @Override
+    public MappedLongArraySet tailSet(Long fromElement, boolean inclusive) {
+        return reversed
+                ? view(from, lowerIndex(fromElement, inclusive) + 1)
+                : view(higherIndex(fromElement, inclusive), to);
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        return reversed ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public MappedLongArraySet subSet(Long fromElement, Long toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public MappedLongArraySet headSet(Long toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public MappedLongArraySet tailSet(Long fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Long first() {
+        checkNotEmpty();
+        return elements.get(reversed ? to - 1 : from);
+    }
+
+    @Override
+    public Long last() {
+        checkNotEmpty();
+        return elements.get(reversed ? from : to - 1);
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return Objects.requireNonNull(o) instanceof Long && contains((long) (Long) o);
+    }
+
+    private MappedLongArraySet view(int fromIndex, int toIndex) {
+        return new MappedLongArraySet(elements, fromIndex, Math.max(fromIndex, toIndex), reversed);
+    }
+
+    private void checkNotEmpty() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    private int lowerIndex(long element, boolean inclusive) {
+        int i = search(element);
+        return i >= 0 ? (inclusive ? i : i - 1) : -(i + 1) - 1;
+    }
+
+    private int higherIndex(long element, boolean inclusive) {
+        int i = search(element);
+        return i >= 0 ? (inclusive ? i : i + 1) : -(i + 1);
+    }
+
+    private long valueAt(int index, long absent) {
+        return from <= index && index < to ? elements.get(index) : absent;
+    }
+
+    private Long boxedAt(int index) {
+        return from <= index && index < to ? elements.get(index) : null;
+    }
+
+    private int search(long element) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = elements.get(middle);
+            if (value < element) {
+                low = middle + 1;
+            } else if (value > element) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+}
@@ -0,0 +1,174 @@
+package ru.ifmo.rain.chizhikov.arrayset;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Linear merge of two sorted arrays of distinct elements, used by set operations of {@link ArraySet}.
+ * <p>
+ * Runs of elements, which come from one array only, are skipped with galloping search, so
+ * merging a small set with a large one takes a logarithmic number of comparisons per element
+ * of the small set. Large inputs are cut into parts at the same element in both arrays
+ * and the parts are merged in parallel.
+ */
+class SortedMerge {
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    enum Operation {
+        UNION(true, true, true),
+        INTERSECTION(false, true, false),
+        DIFFERENCE(true, false, false),
+        SYMMETRIC_DIFFERENCE(true, false, true);
+
+        private final boolean left;
+        private final boolean both;
+        private final boolean right;
+
+        Operation(boolean left, boolean both, boolean right) {
+            this.left = left;
+            this.both = both;
+            this.right = right;
+        }
+    }
+
+    private SortedMerge() {
+    }
+
+    /**
+     * Merges ranges of two sorted arrays.
+     *
+     * @param a         first array
+     * @param aFrom     first index of range of {@code a}, inclusive
+     * @param aTo       last index of range of {@code a}, exclusive
+     * @param b         second array
+     * @param bFrom     first index of range of {@code b}, inclusive
+     * @param bTo       last index of range of {@code b}, exclusive
+     * @param order     order of both arrays
+     * @param operation elements to keep
+     * @return sorted elements of result
+     */
+    static <T> Object[] merge(Object[] a, int aFrom, int aTo, Object[] b, int bFrom, int bTo,
+                              Comparator<? super T> order, Operation operation) {
+        int total = aTo - aFrom + bTo - bFrom;
+        int parts = Math.min(total / PARALLEL_THRESHOLD, 4 * ForkJoinPool.getCommonPoolParallelism());
+        if (parts <= 1) {
+            return mergeSequential(a, aFrom, aTo, b, bFrom, bTo, order, operation);
+        }
+
+        boolean aLarger = aTo - aFrom >= bTo - bFrom;
+        Object[] large = aLarger ? a : b;
+        Object[] small = aLarger ? b : a;
+        int largeFrom = aLarger ? aFrom : bFrom;
+        int largeSize = aLarger ? aTo - aFrom : bTo - bFrom;
+        int smallFrom = aLarger ? bFrom : aFrom;
+        int smallTo = aLarger ? bTo : aTo;
+
+        int[] largeBounds = new int[parts + 1];
+        int[] smallBounds = new int[parts + 1];
+        for (int i = 0; i <= parts; ++i) {
+            largeBounds[i] = largeFrom + (int) ((long) largeSize * i / parts);
+            smallBounds[i] = i == parts ? smallTo : i == 0 ? smallFrom
+                    : gallop(small, smallBounds[i - 1], smallTo, large[largeBounds[i]], order);
+        }
+
+        List<Object[]> results = IntStream.range(0, parts).parallel()
+                .mapToObj(i -> aLarger
+                        ? mergeSequential(a, largeBounds[i], largeBounds[i + 1], b, smallBounds[i], smallBounds[i + 1], order, operation)
+                        : mergeSequential(a, smallBounds[i], smallBounds[i + 1], b, largeBounds[i], largeBounds[i + 1], order, operation))
+                .collect(Collectors.toList());
+
+        Object[] result = new Object[results.stream().mapToInt(part -> part.length).sum()];
+        int size = 0;
+        for (Object[] part : results) {
+            System.arraycopy(part, 0, result, size, part.length);
+            size += part.length;
+        }
+        return result;
+    }
+
+    private static <T> Object[] mergeSequential(Object[] a, int aFrom, int aTo, Object[] b, int bFrom, int bTo,
+                                                Comparator<? super T> order, Operation operation) {
+        Object[] result = new Object[capacity(aTo - aFrom, bTo - bFrom, operation)];
+        int size = merge(a, aFrom, aTo, b, bFrom, bTo, order, operation, result);
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> int merge(Object[] a, int i, int aTo, Object[] b, int j, int bTo,
+                                 Comparator<? super T> order, Operation operation, Object[] result) {
+        int size = 0;
+        while (i < aTo && j < bTo) {
+            int compared = order.compare((T) a[i], (T) b[j]);
+            if (compared < 0) {
+                int end = gallop(a, i + 1, aTo, b[j], order);
+                if (operation.left) {
+                    System.arraycopy(a, i, result, size, end - i);
+                    size += end - i;
+                }
+                i = end;
+            } else if (compared > 0) {
+                int end = gallop(b, j + 1, bTo, a[i], order);
+                if (operation.right) {
+                    System.arraycopy(b, j, result, size, end - j);
+                    size += end - j;
+                }
+                j = end;
+            } else {
+                if (operation.both) {
+                    result[size++] = a[i];
+                }
+                ++i;
+                ++j;
+            }
+        }
+        if (operation.left) {
+            System.arraycopy(a, i, result, size, aTo - i);
+            size += aTo - i;
+        }
+        if (operation.right) {
+            System.arraycopy(b, j, result, size, bTo - j);
+            size += bTo - j;
+        }
+        return size;
+    }
+
+    /**
+     * Returns index of the first element of range, which is not less than {@code key},
+     * probing indices {@code from}, {@code from + 1}, {@code from + 3}, ... before binary search.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> int gallop(Object[] array, int from, int to, Object key, Comparator<? super T> order) {
+        int low = from;
+        int step = 1;
+        while (low < to && order.compare((T) array[low], (T) key) < 0) {
+            from = low + 1;
+            low += step;
+            step <<= 1;
+        }
+        int high = Math.min(low, to);
+        while (from < high) {
+            int middle = (from + high) >>> 1;
+            if (order.compare((T) array[middle], (T) key) < 0) {
+                from = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return from;
+    }
+
+    private static int capacity(int a, int b, Operation operation) {
+        switch (operation) {
+            case INTERSECTION:
+                return Math.min(a, b);
+            case DIFFERENCE:
+                return a;
+            default:
+                return a + b;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package ru.ifmo.rain.chizhikov.student;
+
+import info.kgeorgiy.java.advanced.student.Group;
+import info.kgeorgiy.java.advanced.student.Student;
+import info.kgeorgiy.java.advanced.student.StudentGroupQuery;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Student database, which stores a roster in columns.
+ * <p>
+ * Ids are stored as an {@code int} column. First names, last names and groups are
+ * dictionary-encoded: every distinct value is stored once, in a sorted dictionary, and
+ * columns keep {@code int} codes, ordered the same way as values. Filters, sorts and
+ * aggregates work with codes, and {@link Student} objects are created only for results.
+ * <p>
+ * Queries on the list, returned by {@link #getStudents()}, use columns. This list creates
+ * students on access, so the original collection need not be kept. Queries on any other
+ * collection are passed to {@link StudentDB}.
+ */
+public class ColumnarStudentDB implements StudentGroupQuery {
+    private final StudentDB scanner = new StudentDB();
+
+    private final int size;
+    private final int[] ids;
+    private final int[] firstNames;
+    private final int[] lastNames;
+    private final int[] groups;
+    private final String[] firstNameDictionary;
+    private final String[] lastNameDictionary;
+    private final String[] groupDictionary;
+
+    private final int[] byId;
+    private final int[] byName;
+    private final int[] nameRanks;
+    private final List<Student> students;
+
+    /**
+     * Class constructor, specifying roster to store.
+     *
+     * @param roster students of database
+     */
+    public ColumnarStudentDB(Collection<Student> roster) {
+        size = roster.size();
+        ids = new int[size];
+        firstNames = new int[size];
+        lastNames = new int[size];
+        groups = new int[size];
+
+        Map<String, Integer> firstCodes = new HashMap<>();
+        Map<String, Integer> lastCodes = new HashMap<>();
+        Map<String, Integer> groupCodes = new HashMap<>();
+        int row = 0;
+        for (Student student : roster) {
+            ids[row] = student.getId();
+            firstNames[row] = firstCodes.computeIfAbsent(student.getFirstName(), value -> firstCodes.size());
+            lastNames[row] = lastCodes.computeIfAbsent(student.getLastName(), value -> lastCodes.size());
+            groups[row] = groupCodes.computeIfAbsent(student.getGroup(), value -> groupCodes.size());
+            ++row;
+        }
+        firstNameDictionary = encode(firstCodes, firstNames);
+        lastNameDictionary = encode(lastCodes, lastNames);
+        groupDictionary = encode(groupCodes, groups);
+
+        long[] keys = new long[size];
+        for (int i = 0; i < size; ++i) {
+            keys[i] = (long) ids[i] << 32 | i;
+        }
+        Arrays.sort(keys);
+        byId = new int[size];
+        for (int i = 0; i < size; ++i) {
+            byId[i] = (int) keys[i];
+        }
+
+        byName = IntStream.range(0, size).boxed()
+                .sorted(Comparator.<Integer>comparingInt(i -> lastNames[i])
+                        .thenComparingInt(i -> firstNames[i])
+                        .thenComparingInt(i -> ids[i]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        nameRanks = new int[size];
+        for (int i = 0; i < size; ++i) {
+            nameRanks[byName[i]] = i;
+        }
+
+        students = new RosterList();
+    }
+
+    /**
+     * Returns students of database. Students are created on access.
+     *
+     * @return unmodifiable list of students in order of roster
+     */
+    public List<Student> getStudents() {
+        return students;
+    }
+
+    @Override
+    public List<Group> getGroupsByName(Collection<Student> students) {
+        return students == this.students ? groups(byName) : scanner.getGroupsByName(students);
+    }
+
+    @Override
+    public List<Group> getGroupsById(Collection<Student> students) {
+        return students == this.students ? groups(byId) : scanner.getGroupsById(students);
+    }
+
+    @Override
+    public String getLargestGroup(Collection<Student> students) {
+        if (students != this.students) {
+            return scanner.getLargestGroup(students);
+        }
+        int[] counts = new int[groupDictionary.length];
+        for (int group : groups) {
+            ++counts[group];
+        }
+        return largest(counts);
+    }
+
+    @Override
+    public String getLargestGroupFirstName(Collection<Student> students) {
+        if (students != this.students) {
+            return scanner.getLargestGroupFirstName(students);
+        }
+        long[] pairs = new long[size];
+        for (int i = 0; i < size; ++i) {
+            pairs[i] = (long) groups[i] << 32 | firstNames[i];
+        }
+        Arrays.sort(pairs);
+        int[] counts = new int[groupDictionary.length];
+        for (int i = 0; i < size; ++i) {
+            if (i == 0 || pairs[i] != pairs[i - 1]) {
+                ++counts[(int) (pairs[i] >>> 32)];
+            }
+        }
+        return largest(counts);
+    }
+
+    @Override
+    public List<String> getFirstNames(List<Student> students) {
+        return students == this.students ? decode(firstNames, firstNameDictionary) : scanner.getFirstNames(students);
+    }
+
+    @Override
+    public List<String> getLastNames(List<Student> students) {
+        return students == this.students ? decode(lastNames, lastNameDictionary) : scanner.getLastNames(students);
+    }
+
+    @Override
+    public List<String> getGroups(List<Student> students) {
+        return students == this.students ? decode(groups, groupDictionary) : scanner.getGroups(students);
+    }
+
+    @Override
+    public List<String> getFullNames(List<Student> students) {
+        if (students != this.students) {
+            return scanner.getFullNames(students);
+        }
+        return IntStream.range(0, size)
+                .mapToObj(i -> firstNameDictionary[firstNames[i]] + " " + lastNameDictionary[lastNames[i]])
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Set<String> getDistinctFirstNames(List<Student> students) {
+        return students == this.students
+                ? new TreeSet<>(Arrays.asList(firstNameDictionary))
+                : scanner.getDistinctFirstNames(students);
+    }
+
+    @Override
+    public String getMinStudentFirstName(List<Student> students) {
+        if (students != this.students) {
+            return scanner.getMinStudentFirstName(students);
+        }
+        return size == 0 ? "" : firstNameDictionary[firstNames[byId[0]]];
+    }
+
+    @Override
+    public List<Student> sortStudentsById(Collection<Student> students) {
+        return students == this.students ? materialize(byId) : scanner.sortStudentsById(students);
+    }
+
+    @Override
+    public List<Student> sortStudentsByName(Collection<Student> students) {
+        return students == this.students ? materialize(byName) : scanner.sortStudentsByName(students);
+    }
+
+    @Override
+    public List<Student> findStudentsByFirstName(Collection<Student> students, String name) {
+        return students == this.students
+                ? find(firstNames, Arrays.binarySearch(firstNameDictionary, name))
+                : scanner.findStudentsByFirstName(students, name);
+    }
+
+    @Override
+    public List<Student> findStudentsByLastName(Collection<Student> students, String name) {
+        return students == this.students
+                ? find(lastNames, Arrays.binarySearch(lastNameDictionary, name))
+                : scanner.findStudentsByLastName(students, name);
+    }
+
+    @Override
+    public List<Student> findStudentsByGroup(Collection<Student> students, String group) {
+        return students == this.students
+                ? find(groups, Arrays.binarySearch(groupDictionary, group))
+                : scanner.findStudentsByGroup(students, group);
+    }
+
+    @Override
+    public Map<String, String> findStudentNamesByGroup(Collection<Student> students, String group) {
+        if (students != this.students) {
+            return scanner.findStudentNamesByGroup(students, group);
+        }
+        int code = Arrays.binarySearch(groupDictionary, group);
+        Map<Integer, Integer> names = new HashMap<>();
+        for (int i = 0; i < size; ++i) {
+            if (groups[i] == code) {
+                names.merge(lastNames[i], firstNames[i], Math::min);
+            }
+        }
+        Map<String, String> result = new HashMap<>();
+        names.forEach((last, first) -> result.put(lastNameDictionary[last], firstNameDictionary[first]));
+        return result;
+    }
+
+    private static String[] encode(Map<String, Integer> codes, int[] column) {
+        String[] dictionary = codes.keySet().toArray(new String[0]);
+        Arrays.sort(dictionary);
+        int[] sortedCodes = new int[dictionary.length];
+        for (int i = 0; i < dictionary.length; ++i) {
+            sortedCodes[codes.get(dictionary[i])] = i;
+        }
+        for (int i = 0; i < column.length; ++i) {
+            column[i] = sortedCodes[column[i]];
+        }
+        return dictionary;
+    }
+
+    private static List<String> decode(int[] column, String[] dictionary) {
+        return Arrays.stream(column).mapToObj(code -> dictionary[code]).collect(Collectors.toList());
+    }
+
+    private Student student(int row) {
+        return new Student(ids[row], firstNameDictionary[firstNames[row]], lastNameDictionary[lastNames[row]],
+                groupDictionary[groups[row]]);
+    }
+
+    private List<Student> materialize(int[] rows) {
+        return Arrays.stream(rows).mapToObj(this::student).collect(Collectors.toList());
+    }
+
+    private List<Student> find(int[] column, int code) {
+        if (code < 0) {
+            return new ArrayList<>();
+        }
+        int[] ranks = IntStream.range(0, size).filter(row -> column[row] == code).map(row -> nameRanks[row]).toArray();
+        Arrays.sort(ranks);
+        for (int i = 0; i < ranks.length; ++i) {
+            ranks[i] = byName[ranks[i]];
+        }
+        return materialize(ranks);
+    }
+
+    private List<Group> groups(int[] order) {
+        int[] starts = new int[groupDictionary.length + 1];
+        for (int group : groups) {
+            ++starts[group + 1];
+        }
+        for (int i = 0; i < groupDictionary.length; ++i) {
+            starts[i + 1] += starts[i];
+        }
+
+        int[] rows = new int[size];
+        int[] positions = Arrays.copyOf(starts, groupDictionary.length);
+        for (int row : order) {
+            rows[positions[groups[row]]++] = row;
+        }
+
+        List<Group> result = new ArrayList<>(groupDictionary.length);
+        for (int i = 0; i < groupDictionary.length; ++i) {
+            result.add(new Group(groupDictionary[i], materialize(Arrays.copyOfRange(rows, starts[i], starts[i + 1]))));
+        }
+        return result;
+    }
+
+    private String largest(int[] counts) {
+        int largest = -1;
+        for (int i = 0; i < counts.length; ++i) {
+            if (largest < 0 || counts[i] > counts[largest]) {
+                largest = i;
+            }
+        }
+        return largest < 0 ? "" : groupDictionary[largest];
+    }
+
+    private class RosterList extends AbstractList<Student> implements RandomAccess {
+        @Override
+        public Student get(int index) {
+            Objects.checkIndex(index, size);
+            return student(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
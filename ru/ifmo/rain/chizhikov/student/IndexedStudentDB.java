@@ -0,0 +1,182 @@
+package ru.ifmo.rain.chizhikov.student;
+
+import info.kgeorgiy.java.advanced.student.Group;
+import info.kgeorgiy.java.advanced.student.Student;
+import info.kgeorgiy.java.advanced.student.StudentGroupQuery;
+
+import java.util.*;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Student database with indexes, built once for a fixed roster.
+ * <p>
+ * Queries on the roster are answered with hash indexes on first name, last name and group,
+ * pre-sorted lists and precomputed aggregates. Queries on any other collection are passed to
+ * {@link StudentDB}. Roster is recognized by identity and must not be modified after the
+ * database is built. Returned collections are unmodifiable.
+ */
+public class IndexedStudentDB implements StudentGroupQuery {
+    private final StudentDB scanner = new StudentDB();
+    private final Collection<Student> roster;
+
+    private final List<Student> byId;
+    private final List<Student> byName;
+    private final Map<String, List<Student>> byFirstName;
+    private final Map<String, List<Student>> byLastName;
+    private final Map<String, List<Student>> byGroup;
+    private final Map<String, Map<String, String>> namesByGroup;
+    private final List<Group> groupsByName;
+    private final List<Group> groupsById;
+    private final String largestGroup;
+    private final String largestGroupFirstName;
+    private final Set<String> distinctFirstNames;
+    private final String minStudentFirstName;
+
+    /**
+     * Class constructor, specifying roster to build indexes for.
+     *
+     * @param roster students of database
+     */
+    public IndexedStudentDB(Collection<Student> roster) {
+        this.roster = roster;
+
+        List<Student> byId = new ArrayList<>(roster);
+        byId.sort(Student::compareTo);
+        List<Student> byName = new ArrayList<>(roster);
+        byName.sort(StudentDB.NAME_ORDER);
+        this.byId = Collections.unmodifiableList(byId);
+        this.byName = Collections.unmodifiableList(byName);
+
+        byFirstName = index(byName, Student::getFirstName);
+        byLastName = index(byName, Student::getLastName);
+        byGroup = index(byName, Student::getGroup);
+        Map<String, List<Student>> byGroupId = index(byId, Student::getGroup);
+
+        namesByGroup = new HashMap<>();
+        byGroup.forEach((group, students) -> namesByGroup.put(group, Collections.unmodifiableMap(students.stream()
+                .collect(Collectors.toMap(Student::getLastName, Student::getFirstName, BinaryOperator.minBy(String::compareTo))))));
+
+        List<Group> groupsByName = new ArrayList<>();
+        List<Group> groupsById = new ArrayList<>();
+        String largestGroup = "";
+        String largestGroupFirstName = "";
+        int largestSize = -1;
+        int largestFirstNames = -1;
+        for (String group : new TreeSet<>(byGroup.keySet())) {
+            List<Student> students = byGroup.get(group);
+            groupsByName.add(new Group(group, students));
+            groupsById.add(new Group(group, byGroupId.get(group)));
+
+            if (students.size() > largestSize) {
+                largestSize = students.size();
+                largestGroup = group;
+            }
+            int firstNames = (int) students.stream().map(Student::getFirstName).distinct().count();
+            if (firstNames > largestFirstNames) {
+                largestFirstNames = firstNames;
+                largestGroupFirstName = group;
+            }
+        }
+        this.groupsByName = Collections.unmodifiableList(groupsByName);
+        this.groupsById = Collections.unmodifiableList(groupsById);
+        this.largestGroup = largestGroup;
+        this.largestGroupFirstName = largestGroupFirstName;
+
+        distinctFirstNames = Collections.unmodifiableSortedSet(new TreeSet<>(byFirstName.keySet()));
+        minStudentFirstName = byId.isEmpty() ? "" : byId.get(0).getFirstName();
+    }
+
+    @Override
+    public List<Group> getGroupsByName(Collection<Student> students) {
+        return students == roster ? groupsByName : scanner.getGroupsByName(students);
+    }
+
+    @Override
+    public List<Group> getGroupsById(Collection<Student> students) {
+        return students == roster ? groupsById : scanner.getGroupsById(students);
+    }
+
+    @Override
+    public String getLargestGroup(Collection<Student> students) {
+        return students == roster ? largestGroup : scanner.getLargestGroup(students);
+    }
+
+    @Override
+    public String getLargestGroupFirstName(Collection<Student> students) {
+        return students == roster ? largestGroupFirstName : scanner.getLargestGroupFirstName(students);
+    }
+
+    @Override
+    public List<String> getFirstNames(List<Student> students) {
+        return scanner.getFirstNames(students);
+    }
+
+    @Override
+    public List<String> getLastNames(List<Student> students) {
+        return scanner.getLastNames(students);
+    }
+
+    @Override
+    public List<String> getGroups(List<Student> students) {
+        return scanner.getGroups(students);
+    }
+
+    @Override
+    public List<String> getFullNames(List<Student> students) {
+        return scanner.getFullNames(students);
+    }
+
+    @Override
+    public Set<String> getDistinctFirstNames(List<Student> students) {
+        return students == roster ? distinctFirstNames : scanner.getDistinctFirstNames(students);
+    }
+
+    @Override
+    public String getMinStudentFirstName(List<Student> students) {
+        return students == roster ? minStudentFirstName : scanner.getMinStudentFirstName(students);
+    }
+
+    @Override
+    public List<Student> sortStudentsById(Collection<Student> students) {
+        return students == roster ? byId : scanner.sortStudentsById(students);
+    }
+
+    @Override
+    public List<Student> sortStudentsByName(Collection<Student> students) {
+        return students == roster ? byName : scanner.sortStudentsByName(students);
+    }
+
+    @Override
+    public List<Student> findStudentsByFirstName(Collection<Student> students, String name) {
+        return students == roster ? lookup(byFirstName, name) : scanner.findStudentsByFirstName(students, name);
+    }
+
+    @Override
+    public List<Student> findStudentsByLastName(Collection<Student> students, String name) {
+        return students == roster ? lookup(byLastName, name) : scanner.findStudentsByLastName(students, name);
+    }
+
+    @Override
+    public List<Student> findStudentsByGroup(Collection<Student> students, String group) {
+        return students == roster ? lookup(byGroup, group) : scanner.findStudentsByGroup(students, group);
+    }
+
+    @Override
+    public Map<String, String> findStudentNamesByGroup(Collection<Student> students, String group) {
+        return students == roster
+                ? namesByGroup.getOrDefault(group, Collections.emptyMap())
+                : scanner.findStudentNamesByGroup(students, group);
+    }
+
+    private static Map<String, List<Student>> index(List<Student> sorted, Function<Student, String> key) {
+        Map<String, List<Student>> index = sorted.stream().collect(Collectors.groupingBy(key));
+        index.replaceAll((value, students) -> Collections.unmodifiableList(students));
+        return index;
+    }
+
+    private static List<Student> lookup(Map<String, List<Student>> index, String key) {
+        return index.getOrDefault(key, Collections.emptyList());
+    }
+}
@@ -5,34 +5,65 @@ import info.kgeorgiy.java.advanced.student.Student;
 import info.kgeorgiy.java.advanced.student.StudentGroupQuery;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 
+/**
+ * Stream-based implementation of {@link StudentGroupQuery}.
+ * <p>
+ * Database can run queries in parallel on a specified {@link ForkJoinPool}. Collections, smaller
+ * than sequential cutoff, are always processed sequentially. Results of parallel and sequential
+ * queries are the same, including order of elements.
+ */
 public class StudentDB implements StudentGroupQuery {
+    private final ForkJoinPool pool;
+    private final int sequentialCutoff;
+
+    /**
+     * Class constructor of sequential database.
+     */
+    public StudentDB() {
+        this(null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Class constructor, specifying pool for parallel queries and sequential cutoff.
+     *
+     * @param pool             pool to run parallel queries on
+     * @param sequentialCutoff minimal size of collection, which is processed in parallel
+     */
+    public StudentDB(ForkJoinPool pool, int sequentialCutoff) {
+        this.pool = pool;
+        this.sequentialCutoff = sequentialCutoff;
+    }
 
     @Override
     public List<Group> getGroupsByName(Collection<Student> students) {
-        return getGroups(students, this::sortStudentsByName);
+        return getGroups(students, NAME_ORDER);
     }
 
     @Override
     public List<Group> getGroupsById(Collection<Student> students) {
-        return getGroups(students, this::sortStudentsById);
+        return getGroups(students, Student::compareTo);
     }
 
     @Override
     public String getLargestGroup(Collection<Student> students) {
-        return getLargestGroup(students,List::size);
+        return getLargestGroup(students, stream -> stream.map(Student::getGroup));
     }
 
     @Override
     public String getLargestGroupFirstName(Collection<Student> students) {
-        return getLargestGroup(students,first -> getDistinctFirstNames(first).size());
+        return getLargestGroup(students, stream -> stream
+                .map(student -> Map.entry(student.getGroup(), student.getFirstName()))
+                .unordered()
+                .distinct()
+                .map(Map.Entry::getKey));
     }
 
 
@@ -59,17 +90,17 @@ public class StudentDB implements StudentGroupQuery {
 
     @Override
     public Set<String> getDistinctFirstNames(List<Student> students) {
-        return getMapStream(students, Student::getFirstName)
+        return query(students, stream -> stream.map(Student::getFirstName)
                 .sorted(String::compareTo)
-                .collect(Collectors.toCollection(TreeSet::new));
+                .collect(Collectors.toCollection(TreeSet::new)));
     }
 
     @Override
     public String getMinStudentFirstName(List<Student> students) {
-        return students.stream()
+        return query(students, stream -> stream
                 .min(Student::compareTo)
                 .map(Student::getFirstName)
-                .orElse("");
+                .orElse(""));
     }
 
     @Override
@@ -79,7 +110,7 @@ public class StudentDB implements StudentGroupQuery {
 
     @Override
     public List<Student> sortStudentsByName(Collection<Student> students) {
-        return sortStudents(students, naturalOrder);
+        return sortStudents(students, NAME_ORDER);
     }
 
     @Override
@@ -100,59 +131,61 @@ public class StudentDB implements StudentGroupQuery {
 
     @Override
     public Map<String, String> findStudentNamesByGroup(Collection<Student> students, String group) {
-        return getFilteredStream(students, (Student student) -> student.getGroup().equals(group))
-                .collect(Collectors.toMap(Student::getLastName, Student::getFirstName, BinaryOperator.minBy(String::compareTo)));
+        return query(students, stream -> stream
+                .filter((Student student) -> student.getGroup().equals(group))
+                .collect(Collectors.toMap(Student::getLastName, Student::getFirstName, BinaryOperator.minBy(String::compareTo))));
     }
 
 
     private Function<Student, String> getFullName = student -> student.getFirstName() + " " + student.getLastName();
 
-    private Comparator<Student> naturalOrder = Comparator.comparing(Student::getLastName)
+    static final Comparator<Student> NAME_ORDER = Comparator.comparing(Student::getLastName)
             .thenComparing(Student::getFirstName)
             .thenComparing(Student::getId);
 
-    private Stream<String> getMapStream(Collection<Student> students, Function<Student, String> function) {
-        return students.stream().map(function);
+    private <R> R query(Collection<Student> students, Function<Stream<Student>, R> query) {
+        if (pool == null || students.size() < sequentialCutoff) {
+            return query.apply(students.stream());
+        }
+        return pool.submit(() -> query.apply(students.parallelStream())).join();
     }
 
     private List<String> getStudentList(Collection<Student> students, Function<Student, String> function) {
-        return getMapStream(students, function).collect(Collectors.toList());
+        return query(students, stream -> stream.map(function).collect(Collectors.toList()));
     }
 
     private List<Student> sortStudents(Collection<Student> students, Comparator<Student> comparator) {
-        return students.stream()
+        return query(students, stream -> stream
                 .sorted(comparator)
-                .collect(Collectors.toList());
-    }
-
-    private Stream<Student> getFilteredStream(Collection<Student> students, Predicate<Student> predicate) {
-        return students.stream()
-                .filter(predicate);
+                .collect(Collectors.toList()));
     }
 
     private List<Student> findStudent(Collection<Student> students, Predicate<Student> predicate) {
-        return getFilteredStream(students, predicate)
-                .sorted(naturalOrder)
-                .collect(Collectors.toList());
-    }
-
-
-    private Stream<Map.Entry<String, List<Student>>> getGroupStream(Collection<Student> students, Supplier<Map<String, List<Student>>> type) {
-        return students.stream()
-                .collect(Collectors.groupingBy(Student::getGroup, type, Collectors.toList()))
-                .entrySet().stream();
-    }
-
-    private List<Group> getGroups(Collection<Student> students, Function<List<Student>, List<Student>> order) {
-        return getGroupStream(students, TreeMap::new)
-                .map(group -> new Group(group.getKey(), order.apply(group.getValue())))
-                .collect(Collectors.toList());
-    }
-
-    private String getLargestGroup(Collection<Student> students, Function<List<Student>, Integer> getSize) {
-        return getGroupStream(students, HashMap::new)
-                .max(Comparator.comparingInt(
-                        (Map.Entry<String, List<Student>> group) -> getSize.apply(group.getValue()))
+        return query(students, stream -> stream
+                .filter(predicate)
+                .sorted(NAME_ORDER)
+                .collect(Collectors.toList()));
+    }
+
+
+    private List<Group> getGroups(Collection<Student> students, Comparator<Student> order) {
+        List<Student> sorted = sortStudents(students, Comparator.comparing(Student::getGroup).thenComparing(order));
+        List<Group> groups = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= sorted.size(); ++i) {
+            if (i == sorted.size() || !sorted.get(i).getGroup().equals(sorted.get(start).getGroup())) {
+                groups.add(new Group(sorted.get(start).getGroup(), new ArrayList<>(sorted.subList(start, i))));
+                start = i;
+            }
+        }
+        return groups;
+    }
+
+    private String getLargestGroup(Collection<Student> students, Function<Stream<Student>, Stream<String>> groups) {
+        return query(students, stream -> groups.apply(stream)
+                .collect(Collectors.groupingBy(Function.identity(), HashMap::new, Collectors.counting())))
+                .entrySet().stream()
+                .max(Map.Entry.<String, Long>comparingByValue()
                         .thenComparing(Map.Entry::getKey, Collections.reverseOrder(String::compareTo)))
                 .map(Map.Entry::getKey).orElse("");
     }
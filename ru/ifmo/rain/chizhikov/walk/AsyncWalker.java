@@ -0,0 +1,208 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.concurrent.*;
+
+/**
+ * Hashes small files through {@link AsynchronousFileChannel}.
+ * <p>
+ * Every file is opened, measured and read on an I/O pool of {@code inFlight} threads, which
+ * is also the executor of its channel, so up to {@code inFlight} opens and reads of
+ * different files overlap each other, while the reading thread only submits them. Every read
+ * uses a buffer from a pool of {@code inFlight} buffers, so no buffers are allocated per
+ * file. Files, which are not smaller than threshold, files, hashed as Merkle trees, and all
+ * files, when hash cache is used, are hashed by a blocking pool of {@code threads} threads,
+ * so hashes are the same as of other modes. Output is written in input order with at most
+ * {@code window} pending results.
+ */
+class AsyncWalker {
+    private final FileHasher hasher;
+    private final int threshold;
+    private final int window;
+    private final ExecutorService blocking;
+    private final ExecutorService io;
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    /**
+     * Creates walker.
+     *
+     * @param hasher    hasher of files
+     * @param threads   number of threads, hashing large files
+     * @param threshold size of file, starting from which file is hashed by blocking pool
+     * @param inFlight  maximal number of simultaneous opens and reads of small files
+     * @param window    maximal number of results, waiting to be written
+     */
+    AsyncWalker(FileHasher hasher, int threads, int threshold, int inFlight, int window) {
+        this.hasher = hasher;
+        this.threshold = threshold;
+        this.window = window;
+        this.blocking = Executors.newFixedThreadPool(threads);
+        this.io = Executors.newFixedThreadPool(inFlight);
+        this.buffers = new ArrayBlockingQueue<>(inFlight);
+        for (int i = 0; i < inFlight; ++i) {
+            buffers.add(ByteBuffer.allocateDirect(threshold));
+        }
+    }
+
+    /**
+     * Writes hashes of files, listed in {@code reader}, in order of input.
+     *
+     * @param reader source of paths, one per line
+     * @param writer destination of hashes
+     * @throws IOException if reading of input or writing of output fails
+     */
+    void writeHashes(BufferedReader reader, HashWriter writer) throws IOException {
+        Deque<CompletableFuture<HashedFile>> pending = new ArrayDeque<>();
+
+        try {
+            String file;
+            while ((file = reader.readLine()) != null) {
+                pending.add(submit(file));
+                if (pending.size() >= window) {
+                    writer.write(await(pending.poll()));
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                writer.write(await(pending.poll()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing files");
+        } finally {
+            blocking.shutdownNow();
+            io.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<HashedFile> submit(String file) throws InterruptedException {
+        Path path;
+        try {
+            path = Paths.get(file);
+        } catch (InvalidPathException e) {
+            return CompletableFuture.completedFuture(new HashedFile(hasher.zero(), file));
+        }
+
+        if (hasher.isCached()) {
+            return hashBlocking(path);
+        }
+
+        ByteBuffer buffer = buffers.take();
+        CompletableFuture<HashedFile> result = new CompletableFuture<>();
+        io.execute(() -> open(path, buffer, result));
+        return result;
+    }
+
+    private void open(Path path, ByteBuffer buffer, CompletableFuture<HashedFile> result) {
+        long start = System.nanoTime();
+        AsynchronousFileChannel channel = null;
+        try {
+            channel = AsynchronousFileChannel.open(path, Collections.singleton(StandardOpenOption.READ), io);
+            long size = channel.size();
+            if (size < threshold && !hasher.isTree(size)) {
+                buffer.clear();
+                channel.read(buffer, 0, null, new Reader(path, channel, buffer, start, result));
+                return;
+            }
+            channel.close();
+            buffers.add(buffer);
+            hashBlocking(path).whenComplete((hashed, e) -> {
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(hashed);
+                }
+            });
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            closeQuietly(channel);
+            buffers.add(buffer);
+            result.complete(new HashedFile(hasher.failed(e), path.toString()));
+        } catch (Throwable e) {
+            closeQuietly(channel);
+            buffers.add(buffer);
+            result.completeExceptionally(e);
+        }
+    }
+
+    private CompletableFuture<HashedFile> hashBlocking(Path path) {
+        return CompletableFuture.supplyAsync(() -> new HashedFile(hasher.calculateHash(path), path.toString()), blocking);
+    }
+
+    private static void closeQuietly(AsynchronousFileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static HashedFile await(CompletableFuture<HashedFile> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to calculate hash: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private class Reader implements CompletionHandler<Integer, Void> {
+        private final Path path;
+        private final AsynchronousFileChannel channel;
+        private final ByteBuffer buffer;
+        private final long start;
+        private final CompletableFuture<HashedFile> result;
+
+        private Reader(Path path, AsynchronousFileChannel channel, ByteBuffer buffer, long start,
+                       CompletableFuture<HashedFile> result) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.start = start;
+            this.result = result;
+        }
+
+        @Override
+        public void completed(Integer read, Void attachment) {
+            if (read != -1 && buffer.hasRemaining()) {
+                channel.read(buffer, buffer.position(), null, this);
+                return;
+            }
+
+            if (read != -1) {
+                finish(() -> new HashedFile(hasher.calculateHash(path), path.toString()));
+            } else {
+                buffer.flip();
+                finish(() -> new HashedFile(hasher.hashContents(path, buffer, start), path.toString()));
+            }
+        }
+
+        @Override
+        public void failed(Throwable e, Void attachment) {
+            finish(() -> new HashedFile(e instanceof Exception ? hasher.failed((Exception) e) : hasher.zero(),
+                    path.toString()));
+        }
+
+        private void finish(Callable<HashedFile> hash) {
+            try {
+                channel.close();
+                result.complete(hash.call());
+            } catch (Exception e) {
+                result.complete(new HashedFile(hasher.failed(e), path.toString()));
+            } finally {
+                buffers.add(buffer);
+            }
+        }
+    }
+}
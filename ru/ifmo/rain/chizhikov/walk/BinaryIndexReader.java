@@ -0,0 +1,185 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+
+//java ru.ifmo.rain.chizhikov.walk.BinaryIndexReader output.idx /path/to/file
+
+/**
+ * Reads binary index, written by {@link BinaryIndexWriter}, through memory mapping.
+ * <p>
+ * Lookup by path is a binary search over sorted index if index contains it,
+ * and a linear scan otherwise.
+ * <p>
+ * Usage: BinaryIndexReader index [path...]. Without paths, prints all entries in the
+ * text format of {@link Walk}.
+ */
+public class BinaryIndexReader implements AutoCloseable {
+    private final FileChannel channel;
+    private final int hashLength;
+    private final int count;
+    private final ByteBuffer paths;
+    private final ByteBuffer hashes;
+    private final ByteBuffer offsets;
+    private final ByteBuffer index;
+
+    /**
+     * Opens index file.
+     *
+     * @param file index file
+     * @throws IOException if index can't be read or has invalid format
+     */
+    public BinaryIndexReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = map(0, BinaryIndexWriter.HEADER_SIZE);
+            if (header.getInt() != BinaryIndexWriter.MAGIC) {
+                throw new IOException("Not a binary index: " + file);
+            }
+            hashLength = header.getInt();
+            long entries = header.getLong();
+            long hashesOffset = header.getLong();
+            long offsetsOffset = header.getLong();
+            long indexOffset = header.getLong();
+            if (entries < 0 || entries > Integer.MAX_VALUE || hashLength <= 0) {
+                throw new IOException("Corrupted binary index: " + file);
+            }
+            count = (int) entries;
+
+            paths = map(BinaryIndexWriter.HEADER_SIZE, hashesOffset - BinaryIndexWriter.HEADER_SIZE);
+            hashes = map(hashesOffset, (long) count * hashLength);
+            offsets = map(offsetsOffset, 8L * count);
+            index = indexOffset == 0 ? null : map(indexOffset, 4L * count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private ByteBuffer map(long position, long size) throws IOException {
+        if (size < 0 || size > Integer.MAX_VALUE || position + size > channel.size()) {
+            throw new IOException("Corrupted binary index: invalid section " + position + "+" + size);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    /**
+     * Returns number of entries.
+     *
+     * @return number of entries
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns path of entry.
+     *
+     * @param entry number of entry
+     * @return path of entry
+     */
+    public String path(int entry) {
+        int position = pathPosition(entry);
+        byte[] bytes = new byte[paths.getInt(position)];
+        paths.duplicate().position(position + 4).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns hash of entry.
+     *
+     * @param entry number of entry
+     * @return hash of entry
+     */
+    public byte[] hash(int entry) {
+        byte[] hash = new byte[hashLength];
+        hashes.duplicate().position(entry * hashLength).get(hash);
+        return hash;
+    }
+
+    /**
+     * Finds hash of specified path.
+     *
+     * @param path path of file
+     * @return hash of file or {@code null} if index doesn't contain path
+     */
+    public byte[] find(String path) {
+        byte[] key = path.getBytes(StandardCharsets.UTF_8);
+
+        if (index == null) {
+            for (int entry = 0; entry < count; ++entry) {
+                if (compare(key, entry) == 0) {
+                    return hash(entry);
+                }
+            }
+            return null;
+        }
+
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = index.getInt(4 * middle);
+            int compare = compare(key, entry);
+            if (compare == 0) {
+                return hash(entry);
+            } else if (compare < 0) {
+                high = middle - 1;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return null;
+    }
+
+    private int pathPosition(int entry) {
+        return (int) (offsets.getLong(8 * entry) - BinaryIndexWriter.HEADER_SIZE);
+    }
+
+    private int compare(byte[] key, int entry) {
+        int position = pathPosition(entry);
+        int length = paths.getInt(position);
+        for (int i = 0; i < Math.min(key.length, length); ++i) {
+            int compare = Byte.compareUnsigned(key[i], paths.get(position + 4 + i));
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return Integer.compare(key.length, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) {
+        if (args == null || args.length < 1 || args[0] == null) {
+            System.out.println("Usage: BinaryIndexReader <index> [path...]");
+            return;
+        }
+
+        try (BinaryIndexReader reader = new BinaryIndexReader(Paths.get(args[0]))) {
+            if (args.length == 1) {
+                for (int entry = 0; entry < reader.size(); ++entry) {
+                    System.out.println(Walk.formatLine(reader.hash(entry), reader.path(entry)));
+                }
+            }
+            for (int i = 1; i < args.length; ++i) {
+                byte[] hash = reader.find(args[i]);
+                System.out.println(hash == null ? "NOT FOUND: " + args[i] : Walk.formatLine(hash, args[i]));
+            }
+        } catch (InvalidPathException e) {
+            System.out.println("ERROR: Invalid path of index: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("ERROR: IOException: " + e.getMessage());
+        }
+    }
+}
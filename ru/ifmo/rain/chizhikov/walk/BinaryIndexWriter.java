@@ -0,0 +1,138 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes hashes as binary index.
+ * <p>
+ * Index consists of header, table of length-prefixed UTF-8 paths, column of fixed-width
+ * hashes, column of offsets of paths and, optionally, numbers of entries sorted by path
+ * bytes. Header contains magic number, hash length, number of entries and offsets of
+ * the three columns; offset of sorted index is {@code 0} if it is absent. All numbers are
+ * big-endian. Index is read by {@link BinaryIndexReader}.
+ */
+class BinaryIndexWriter implements HashWriter {
+    static final int MAGIC = 0x57494458;
+    static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 8;
+
+    private final FileChannel channel;
+    private final DataOutputStream paths;
+    private final Path hashesFile;
+    private final DataOutputStream hashes;
+    private final int hashLength;
+    private final boolean sorted;
+    private long[] offsets = new long[1024];
+    private int count;
+    private long position = HEADER_SIZE;
+
+    /**
+     * Creates writer of index.
+     *
+     * @param file       index file
+     * @param hashLength length of every hash
+     * @param sorted     whether sorted index of paths should be written
+     * @throws IOException if index file can't be created
+     */
+    BinaryIndexWriter(Path file, int hashLength, boolean sorted) throws IOException {
+        this.hashLength = hashLength;
+        this.sorted = sorted;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ);
+        channel.position(HEADER_SIZE);
+        this.paths = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+        this.hashesFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".hashes");
+        this.hashes = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(hashesFile), 1 << 16));
+    }
+
+    @Override
+    public void write(byte[] hash, String file) throws IOException {
+        if (count == Integer.MAX_VALUE) {
+            throw new IOException("Too many entries for binary index");
+        }
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2 * count);
+        }
+
+        byte[] bytes = file.getBytes(StandardCharsets.UTF_8);
+        offsets[count++] = position;
+        paths.writeInt(bytes.length);
+        paths.write(bytes);
+        position += 4 + bytes.length;
+        hashes.write(hash);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            hashes.close();
+            long hashesOffset = position;
+            Files.copy(hashesFile, paths);
+
+            long offsetsOffset = hashesOffset + (long) count * hashLength;
+            for (int i = 0; i < count; ++i) {
+                paths.writeLong(offsets[i]);
+            }
+
+            long indexOffset = 0;
+            if (sorted) {
+                paths.flush();
+                indexOffset = offsetsOffset + 8L * count;
+                for (int entry : sortedEntries(hashesOffset)) {
+                    paths.writeInt(entry);
+                }
+            }
+            paths.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(hashLength).putLong(count)
+                    .putLong(hashesOffset).putLong(offsetsOffset).putLong(indexOffset).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        } finally {
+            paths.close();
+            Files.deleteIfExists(hashesFile);
+        }
+    }
+
+    private int[] sortedEntries(long tableEnd) throws IOException {
+        if (tableEnd - HEADER_SIZE > Integer.MAX_VALUE) {
+            throw new IOException("Path table is too large for sorted index");
+        }
+        MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, tableEnd - HEADER_SIZE);
+
+        Integer[] order = new Integer[count];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (a, b) -> comparePaths(table, (int) (offsets[a] - HEADER_SIZE), (int) (offsets[b] - HEADER_SIZE)));
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Compares length-prefixed paths as unsigned bytes.
+     *
+     * @param table buffer of paths
+     * @param a     position of first path
+     * @param b     position of second path
+     * @return result of comparison
+     */
+    static int comparePaths(ByteBuffer table, int a, int b) {
+        int lengthA = table.getInt(a);
+        int lengthB = table.getInt(b);
+        for (int i = 0; i < Math.min(lengthA, lengthB); ++i) {
+            int compare = Byte.compareUnsigned(table.get(a + 4 + i), table.get(b + 4 + i));
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return Integer.compare(lengthA, lengthB);
+    }
+}
@@ -0,0 +1,130 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Hashes all files of directory trees on a {@link ForkJoinPool}.
+ * <p>
+ * Every directory is listed by its own task, which forks tasks for subdirectories and
+ * for hashing of files, so idle workers steal both traversal and hashing work. Results
+ * are written in lexicographic order of entries inside each directory as soon as they
+ * are ready, while traversal of the rest of the tree is still running.
+ */
+class DirectoryWalker {
+    private final FileHasher hasher;
+    private final int threads;
+
+    /**
+     * Creates walker with specified hasher and number of worker threads.
+     *
+     * @param hasher  hasher of regular files
+     * @param threads number of worker threads
+     */
+    DirectoryWalker(FileHasher hasher, int threads) {
+        this.hasher = hasher;
+        this.threads = threads;
+    }
+
+    /**
+     * Writes hashes of all files reachable from paths, listed in {@code reader}.
+     *
+     * @param reader source of paths, one per line
+     * @param writer destination of hashes
+     * @throws IOException if reading of input or writing of output fails
+     */
+    void writeHashes(BufferedReader reader, HashWriter writer) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        try {
+            String file;
+
+            while ((file = reader.readLine()) != null) {
+                Path path;
+                try {
+                    path = Paths.get(file);
+                } catch (InvalidPathException e) {
+                    writer.write(hasher.zero(), file);
+                    continue;
+                }
+
+                if (isDirectory(path)) {
+                    write(writer, pool.invoke(new DirectoryTask(path)));
+                } else {
+                    writer.write(hasher.calculateHash(path), path.toString());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void write(HashWriter writer, List<ForkJoinTask<?>> entries) throws IOException {
+        for (ForkJoinTask<?> entry : entries) {
+            if (entry instanceof DirectoryTask) {
+                write(writer, ((DirectoryTask) entry).join());
+            } else {
+                writer.write(((FileTask) entry).join());
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class DirectoryTask extends RecursiveTask<List<ForkJoinTask<?>>> {
+        private final Path directory;
+
+        private DirectoryTask(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected List<ForkJoinTask<?>> compute() {
+            List<Path> children = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                stream.forEach(children::add);
+            } catch (IOException | DirectoryIteratorException | SecurityException e) {
+                FileTask failed = new FileTask(directory);
+                failed.complete(new HashedFile(hasher.zero(), directory.toString()));
+                return Collections.singletonList(failed);
+            }
+            children.sort(null);
+
+            List<ForkJoinTask<?>> entries = new ArrayList<>(children.size());
+            for (Path child : children) {
+                ForkJoinTask<?> task = isDirectory(child) ? new DirectoryTask(child) : new FileTask(child);
+                entries.add(task.fork());
+            }
+            return entries;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class FileTask extends RecursiveTask<HashedFile> {
+        private final Path file;
+
+        private FileTask(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        protected HashedFile compute() {
+            return new HashedFile(hasher.calculateHash(file), file.toString());
+        }
+    }
+
+    private static boolean isDirectory(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isDirectory();
+        } catch (IOException | SecurityException e) {
+            return false;
+        }
+    }
+}
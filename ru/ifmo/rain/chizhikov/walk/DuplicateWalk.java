@@ -0,0 +1,189 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+//java ru.ifmo.rain.chizhikov.walk.DuplicateWalk -threads 8 input.txt report.txt
+
+/**
+ * Finds groups of identical files among files and directory trees, listed in input file.
+ * <p>
+ * Files are grouped by size first. Files with equal size are compared by hash of their
+ * first and last blocks, and only files, that still can't be told apart, are hashed entirely.
+ * Report contains every group of identical files and the number of bytes, which could be
+ * reclaimed by keeping one file of each group.
+ * <p>
+ * Usage: DuplicateWalk [-hash fnv32|fnv64|xxh64|sha256] [-threads number] [-buffer bytes]
+ * [-map bytes] input output. Options mean the same as for {@link Walk}, other options of
+ * {@link Walk} are rejected. Default hash algorithm is sha256.
+ */
+public class DuplicateWalk {
+    private static final int EDGE_BLOCK = 4096;
+    private static final String[] OPTIONS = {"-hash", "-threads", "-buffer", "-map"};
+
+    private final FileHasher hasher;
+    private final ForkJoinPool pool;
+
+    private DuplicateWalk(FileHasher hasher, ForkJoinPool pool) {
+        this.hasher = hasher;
+        this.pool = pool;
+    }
+
+    public static void main(String[] args) {
+        if (args == null) {
+            return;
+        }
+
+        WalkOptions options;
+        Path inputPath;
+        Path outPath;
+        try {
+            options = WalkOptions.parse(args, HashAlgorithm.SHA256);
+            options.checkSupported(OPTIONS);
+            inputPath = Paths.get(options.input);
+            outPath = Paths.get(options.output);
+        } catch (IllegalArgumentException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.out.println(WalkOptions.usage("DuplicateWalk", OPTIONS));
+            return;
+        }
+
+        FileHasher hasher = new FileHasher(options, null, null, null);
+        ForkJoinPool pool = new ForkJoinPool(options.threads);
+        try {
+            List<Path> files = readFiles(inputPath);
+            List<List<Path>> groups = new DuplicateWalk(hasher, pool).findDuplicates(files);
+            writeReport(outPath, groups);
+        } catch (IOException e) {
+            System.out.println("ERROR: IOException: " + e.getMessage());
+        } catch (SecurityException e) {
+            System.out.println("ERROR: SecurityException: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("ERROR: Interrupted while searching for duplicates");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<List<Path>> findDuplicates(List<Path> files) throws IOException, InterruptedException {
+        Map<Long, List<Path>> bySize = new HashMap<>();
+        for (Path file : files) {
+            try {
+                long size = Files.size(file);
+                if (size > 0) {
+                    bySize.computeIfAbsent(size, s -> new ArrayList<>()).add(file);
+                }
+            } catch (IOException | SecurityException e) {
+                System.out.println("ERROR: Unable to read size of " + file + ": " + e.getMessage());
+            }
+        }
+
+        List<List<Path>> candidates = bySize.values().stream()
+                .filter(group -> group.size() > 1)
+                .collect(Collectors.toList());
+
+        candidates = split(candidates, file -> hasher.hashEdges(file, EDGE_BLOCK));
+        candidates = split(candidates, file -> size(file) <= 2L * EDGE_BLOCK ? new byte[0] : hasher.hash(file));
+        return candidates;
+    }
+
+    private List<List<Path>> split(List<List<Path>> groups, HashFunction function)
+            throws IOException, InterruptedException {
+        try {
+            return pool.submit(() -> groups.parallelStream()
+                    .flatMap(group -> splitGroup(group, function))
+                    .collect(Collectors.toList())).get();
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to compare files: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static Stream<List<Path>> splitGroup(List<Path> group, HashFunction function) {
+        Map<String, List<Path>> byHash = group.parallelStream()
+                .map(file -> {
+                    try {
+                        return Map.entry(Walk.appendHex(new StringBuilder(), function.apply(file)).toString(), file);
+                    } catch (IOException | SecurityException e) {
+                        System.out.println("ERROR: Unable to hash " + file + ": " + e.getMessage());
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.groupingBy(Map.Entry::getKey, TreeMap::new,
+                        Collectors.mapping(Map.Entry::getValue, Collectors.toList())));
+
+        return byHash.values().stream().filter(same -> same.size() > 1);
+    }
+
+    private static long size(Path file) throws IOException {
+        return Files.size(file);
+    }
+
+    private static List<Path> readFiles(Path input) throws IOException {
+        Set<Path> files = new LinkedHashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(input)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    Path path = Paths.get(line);
+                    try (Stream<Path> tree = Files.walk(path)) {
+                        tree.filter(DuplicateWalk::isRegularFile).map(Path::normalize).forEach(files::add);
+                    }
+                } catch (InvalidPathException | IOException | UncheckedIOException | SecurityException e) {
+                    System.out.println("ERROR: Unable to walk " + line + ": " + e.getMessage());
+                }
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    private static boolean isRegularFile(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isRegularFile();
+        } catch (IOException | SecurityException e) {
+            return false;
+        }
+    }
+
+    private static void writeReport(Path output, List<List<Path>> groups) throws IOException {
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+
+        groups.forEach(group -> group.sort(Comparator.naturalOrder()));
+        groups.sort(Comparator.comparing((List<Path> group) -> group.get(0)));
+
+        long reclaimable = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(output)) {
+            for (List<Path> group : groups) {
+                long size = Files.size(group.get(0));
+                reclaimable += size * (group.size() - 1);
+
+                writer.write("group size=" + size + " files=" + group.size());
+                writer.newLine();
+                for (Path file : group) {
+                    writer.write("  " + file);
+                    writer.newLine();
+                }
+            }
+            writer.write("groups=" + groups.size() + " reclaimable=" + reclaimable);
+            writer.newLine();
+        }
+    }
+
+    @FunctionalInterface
+    private interface HashFunction {
+        byte[] apply(Path file) throws IOException;
+    }
+}
@@ -0,0 +1,230 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Calculates hash of file contents with specified {@link HashAlgorithm}.
+ * <p>
+ * Files smaller than mapping threshold are read through {@link FileChannel} into
+ * a direct buffer, which is reused by the calling thread. Larger files are hashed
+ * through {@link MappedByteBuffer} windows. If {@link MerkleHasher} is set, files longer
+ * than one block are hashed as Merkle trees instead. If {@link HashCache} is set, files,
+ * which didn't change since they were cached, aren't read at all. If {@link WalkMetrics}
+ * are set, every hashed file and every failure is recorded there.
+ */
+class FileHasher {
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    static final long DEFAULT_MAPPING_THRESHOLD = 1L << 26;
+
+    private static final long MAPPING_WINDOW = 1L << 28;
+
+    private final HashAlgorithm algorithm;
+    private final long mappingThreshold;
+    private final ThreadLocal<ByteBuffer> buffers;
+    private final HashCache cache;
+    private final MerkleHasher merkle;
+    private final WalkMetrics metrics;
+
+    /**
+     * Creates hasher with algorithm, read buffer size and mapping threshold, specified by options.
+     *
+     * @param options options of walk
+     * @param cache   cache of hashes or {@code null} if every file should be read
+     * @param merkle  Merkle hasher of large files or {@code null} if they are hashed as a whole
+     * @param metrics metrics of hashing or {@code null} if they aren't collected
+     */
+    FileHasher(WalkOptions options, HashCache cache, MerkleHasher merkle, WalkMetrics metrics) {
+        int bufferSize = options.bufferSize;
+        this.algorithm = options.algorithm;
+        this.mappingThreshold = options.mappingThreshold;
+        this.buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(bufferSize));
+        this.cache = cache;
+        this.merkle = merkle;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Calculates hash of file contents.
+     *
+     * @param path file to hash
+     * @return hash of file or zero bytes if file can't be read
+     */
+    byte[] calculateHash(Path path) {
+        try {
+            return hash(path);
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            return failed(e);
+        }
+    }
+
+    /**
+     * Calculates hash of file contents, using cache if it is set.
+     *
+     * @param path file to hash
+     * @return hash of file
+     * @throws IOException if file can't be read
+     */
+    byte[] hash(Path path) throws IOException {
+        if (cache == null) {
+            return hashContents(path);
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        byte[] cached = cache.get(path, attributes);
+        if (cached != null) {
+            if (metrics != null) {
+                metrics.recordCached();
+            }
+            return cached;
+        }
+
+        byte[] hash = hashContents(path);
+        cache.put(path, attributes, hash);
+        return hash;
+    }
+
+    /**
+     * Calculates hash of file contents, which were already read into memory.
+     *
+     * @param path     hashed file
+     * @param contents whole contents of file
+     * @param start    {@link System#nanoTime()} when reading of file started
+     * @return hash of file
+     */
+    byte[] hashContents(Path path, ByteBuffer contents, long start) {
+        int size = contents.remaining();
+        Hasher hasher = algorithm.newHasher();
+        hasher.update(contents);
+        byte[] hash = hasher.digest();
+
+        if (metrics != null) {
+            metrics.recordFile(path, size, System.nanoTime() - start);
+        }
+        return hash;
+    }
+
+    /**
+     * Reports failure of hashing, which happened outside of this hasher.
+     *
+     * @param e reason of failure
+     * @return zero hash
+     */
+    byte[] failed(Exception e) {
+        if (metrics != null) {
+            metrics.recordError(e);
+        }
+        return zero();
+    }
+
+    boolean isCached() {
+        return cache != null;
+    }
+
+    /**
+     * Returns whether file of specified size is hashed as a Merkle tree.
+     *
+     * @param size size of file
+     * @return {@code true} if Merkle hasher is set and file is longer than one block
+     */
+    boolean isTree(long size) {
+        return merkle != null && size > merkle.getBlockSize();
+    }
+
+    /**
+     * Calculates hash of first and last {@code block} bytes of file.
+     * Files not longer than two blocks are hashed entirely.
+     *
+     * @param path  file to hash
+     * @param block size of block
+     * @return hash of edges of file
+     * @throws IOException if file can't be read
+     */
+    byte[] hashEdges(Path path, int block) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, 2L * block));
+
+            readFully(channel, buffer, 0, Math.min(size, block));
+            if (size > block) {
+                long tail = Math.min(size - block, block);
+                readFully(channel, buffer, size - tail, tail);
+            }
+
+            Hasher hasher = algorithm.newHasher();
+            buffer.flip();
+            hasher.update(buffer);
+            return hasher.digest();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, long length) throws IOException {
+        int start = buffer.position();
+        buffer.limit(start + (int) length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - start) == -1) {
+                throw new EOFException("File was truncated while reading");
+            }
+        }
+    }
+
+    /**
+     * Returns hash, which is written for files that can't be read.
+     *
+     * @return zero bytes of hash length
+     */
+    byte[] zero() {
+        return new byte[algorithm.getLength()];
+    }
+
+    private byte[] hashContents(Path path) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            byte[] hash;
+            if (isTree(size)) {
+                hash = merkle.hash(path, channel, size);
+            } else {
+                hash = size >= mappingThreshold ? hashMapped(channel, size) : hashRead(channel);
+            }
+
+            if (metrics != null) {
+                metrics.recordFile(path, size, System.nanoTime() - start);
+            }
+            return hash;
+        }
+    }
+
+    private byte[] hashRead(FileChannel channel) throws IOException {
+        ByteBuffer buffer = buffers.get();
+        Hasher hasher = algorithm.newHasher();
+
+        buffer.clear();
+        while (channel.read(buffer) != -1) {
+            buffer.flip();
+            hasher.update(buffer);
+            buffer.clear();
+        }
+
+        return hasher.digest();
+    }
+
+    private byte[] hashMapped(FileChannel channel, long size) throws IOException {
+        Hasher hasher = algorithm.newHasher();
+
+        for (long position = 0; position < size; position += MAPPING_WINDOW) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAPPING_WINDOW, size - position));
+            hasher.update(window);
+        }
+
+        return hasher.digest();
+    }
+}
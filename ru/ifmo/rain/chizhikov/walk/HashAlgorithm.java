@@ -0,0 +1,137 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Hash algorithms, which can be selected by {@code -hash} option of {@link Walk}.
+ */
+enum HashAlgorithm {
+    FNV32("fnv32", 4, Fnv32::new),
+    FNV64("fnv64", 8, Fnv64::new),
+    XXH64("xxh64", 8, XxHash64::new),
+    SHA256("sha256", 32, Sha256::new);
+
+    private final String name;
+    private final int length;
+    private final Supplier<Hasher> factory;
+
+    HashAlgorithm(String name, int length, Supplier<Hasher> factory) {
+        this.name = name;
+        this.length = length;
+        this.factory = factory;
+    }
+
+    /**
+     * Finds algorithm by its command line name.
+     *
+     * @param name name of algorithm
+     * @return algorithm with specified name
+     * @throws IllegalArgumentException if there is no such algorithm
+     */
+    static HashAlgorithm forName(String name) {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm.name.equals(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hash algorithm: " + name
+                + ", expected one of " + Arrays.toString(names()));
+    }
+
+    private static String[] names() {
+        return Arrays.stream(values()).map(HashAlgorithm::getName).toArray(String[]::new);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    Hasher newHasher() {
+        return factory.get();
+    }
+
+    private static byte[] toBytes(long value, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = length - 1; i >= 0; --i) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+
+    private static class Fnv32 implements Hasher {
+        private static final int FNV_INIT_NUMBER = 0x811c9dc5;
+        private static final int FNV_PRIME_NUMBER = 0x01000193;
+
+        private int current = FNV_INIT_NUMBER;
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            int hash = current;
+            for (int i = buffer.position(), limit = buffer.limit(); i < limit; ++i) {
+                hash *= FNV_PRIME_NUMBER;
+                hash ^= buffer.get(i) & 0xff;
+            }
+            buffer.position(buffer.limit());
+            current = hash;
+        }
+
+        @Override
+        public byte[] digest() {
+            return toBytes(current, 4);
+        }
+    }
+
+    private static class Fnv64 implements Hasher {
+        private static final long FNV_INIT_NUMBER = 0xcbf29ce484222325L;
+        private static final long FNV_PRIME_NUMBER = 0x100000001b3L;
+
+        private long current = FNV_INIT_NUMBER;
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            long hash = current;
+            for (int i = buffer.position(), limit = buffer.limit(); i < limit; ++i) {
+                hash *= FNV_PRIME_NUMBER;
+                hash ^= buffer.get(i) & 0xff;
+            }
+            buffer.position(buffer.limit());
+            current = hash;
+        }
+
+        @Override
+        public byte[] digest() {
+            return toBytes(current, 8);
+        }
+    }
+
+    private static class Sha256 implements Hasher {
+        private final MessageDigest digest;
+
+        private Sha256() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not supported: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            digest.update(buffer);
+        }
+
+        @Override
+        public byte[] digest() {
+            return digest.digest();
+        }
+    }
+}
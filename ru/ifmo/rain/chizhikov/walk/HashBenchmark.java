@@ -0,0 +1,40 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Measures in-memory throughput of every {@link HashAlgorithm}.
+ * <p>
+ * Usage: HashBenchmark [megabytes [rounds]]
+ */
+public class HashBenchmark {
+    private static final int CHUNK = FileHasher.DEFAULT_BUFFER_SIZE;
+
+    public static void main(String[] args) {
+        int megabytes = args != null && args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int rounds = args != null && args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        byte[] data = new byte[CHUNK];
+        new Random(0).nextBytes(data);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK);
+        buffer.put(data);
+        long chunks = (long) megabytes * (1 << 20) / CHUNK;
+
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            double best = 0;
+            for (int round = 0; round < rounds; ++round) {
+                long start = System.nanoTime();
+                Hasher hasher = algorithm.newHasher();
+                for (long i = 0; i < chunks; ++i) {
+                    buffer.clear();
+                    hasher.update(buffer);
+                }
+                hasher.digest();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                best = Math.max(best, chunks * CHUNK / seconds / (1 << 20));
+            }
+            System.out.printf("%-8s %10.1f MB/s%n", algorithm.getName(), best);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent cache of file hashes, keyed by absolute path, size, modification time and file key.
+ * <p>
+ * Cache file is a binary file: magic number, name of hash scheme, number of entries and
+ * then, for every entry, length-prefixed UTF-8 path, size, modification time in nanoseconds,
+ * length-prefixed file key and hash of algorithm length. Cache of another scheme is
+ * treated as empty. Cache is replaced atomically by moving a fully written temporary file
+ * over the old one. Saved cache keeps loaded entries of files, which still exist, so a run
+ * over a part of files doesn't drop hashes of the others.
+ */
+class HashCache {
+    private static final int MAGIC = 0x57484332;
+    private static final int MAX_STRING_LENGTH = 1 << 16;
+
+    private final HashAlgorithm algorithm;
+    private final String scheme;
+    private final Map<String, Entry> loaded;
+    private final boolean rehash;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    private HashCache(HashAlgorithm algorithm, String scheme, Map<String, Entry> loaded, boolean rehash) {
+        this.algorithm = algorithm;
+        this.scheme = scheme;
+        this.loaded = loaded;
+        this.rehash = rehash;
+    }
+
+    /**
+     * Creates empty cache, which ignores previously saved hashes.
+     *
+     * @param algorithm hash algorithm of cached hashes
+     * @param scheme    description of the way files are hashed
+     * @return empty cache
+     */
+    static HashCache empty(HashAlgorithm algorithm, String scheme) {
+        return new HashCache(algorithm, scheme, new ConcurrentHashMap<>(), false);
+    }
+
+    /**
+     * Loads cache from specified file. Missing file is treated as empty cache.
+     * If {@code rehash} is set, loaded hashes aren't used, so every file is hashed again,
+     * but they are still saved for files, which were not hashed during this run.
+     *
+     * @param file      cache file
+     * @param algorithm hash algorithm of cached hashes
+     * @param scheme    description of the way files are hashed
+     * @param rehash    whether loaded hashes should be ignored
+     * @return loaded cache
+     * @throws IOException if cache file exists, but can't be read or is corrupted
+     */
+    static HashCache load(Path file, HashAlgorithm algorithm, String scheme, boolean rehash) throws IOException {
+        Map<String, Entry> entries = new ConcurrentHashMap<>();
+        if (Files.notExists(file)) {
+            return new HashCache(algorithm, scheme, entries, rehash);
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a hash cache file: " + file);
+            }
+            if (!scheme.equals(readString(in))) {
+                return new HashCache(algorithm, scheme, entries, rehash);
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; ++i) {
+                String path = readString(in);
+                long fileSize = in.readLong();
+                long modified = in.readLong();
+                String fileKey = readString(in);
+                byte[] hash = new byte[algorithm.getLength()];
+                in.readFully(hash);
+                entries.put(path, new Entry(fileSize, modified, fileKey, hash));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated hash cache file: " + file, e);
+        }
+
+        return new HashCache(algorithm, scheme, entries, rehash);
+    }
+
+    /**
+     * Returns cached hash of file if its attributes didn't change since it was cached.
+     *
+     * @param path       file
+     * @param attributes current attributes of file
+     * @return cached hash or {@code null} if file should be rehashed
+     */
+    byte[] get(Path path, BasicFileAttributes attributes) {
+        String key = key(path);
+        Entry entry = current.get(key);
+        if (entry == null && !rehash) {
+            entry = loaded.get(key);
+        }
+
+        if (entry != null && entry.matches(attributes)) {
+            current.put(key, entry);
+            return entry.hash;
+        }
+        return null;
+    }
+
+    /**
+     * Remembers hash of file with specified attributes.
+     *
+     * @param path       file
+     * @param attributes attributes of file, read before hashing
+     * @param hash       hash of file
+     */
+    void put(Path path, BasicFileAttributes attributes, byte[] hash) {
+        current.put(key(path), new Entry(attributes.size(), modificationTime(attributes),
+                fileKey(attributes), hash));
+    }
+
+    /**
+     * Atomically replaces specified file with hashes of all files, used during this run,
+     * and loaded hashes of files, which were not used, but still exist.
+     *
+     * @param file cache file
+     * @throws IOException if cache can't be written
+     */
+    void save(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                Map<String, Entry> snapshot = new HashMap<>(current);
+                loaded.forEach((path, entry) -> {
+                    if (!snapshot.containsKey(path) && exists(path)) {
+                        snapshot.put(path, entry);
+                    }
+                });
+                out.writeInt(MAGIC);
+                writeString(out, scheme);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+                    Entry value = entry.getValue();
+                    writeString(out, entry.getKey());
+                    out.writeLong(value.size);
+                    out.writeLong(value.modified);
+                    writeString(out, value.fileKey);
+                    out.write(value.hash);
+                }
+            }
+
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static String key(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    private static boolean exists(String path) {
+        try {
+            return Files.exists(Paths.get(path));
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private static long modificationTime(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static String fileKey(BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        return fileKey == null ? "" : fileKey.toString();
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_LENGTH) {
+            throw new IOException("Corrupted hash cache file: invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final String fileKey;
+        final byte[] hash;
+
+        Entry(long size, long modified, String fileKey, byte[] hash) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.hash = hash;
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size()
+                    && modified == modificationTime(attributes)
+                    && Objects.equals(fileKey, HashCache.fileKey(attributes));
+        }
+    }
+}
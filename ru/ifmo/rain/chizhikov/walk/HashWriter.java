@@ -0,0 +1,28 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of hashes of files.
+ */
+interface HashWriter extends Closeable {
+    /**
+     * Writes hash of file.
+     *
+     * @param hash hash of file
+     * @param file path of file
+     * @throws IOException if hash can't be written
+     */
+    void write(byte[] hash, String file) throws IOException;
+
+    /**
+     * Writes hashed file.
+     *
+     * @param file hashed file
+     * @throws IOException if hash can't be written
+     */
+    default void write(HashedFile file) throws IOException {
+        write(file.hash, file.path);
+    }
+}
@@ -0,0 +1,34 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Hash of file together with path, which is written to output.
+ */
+class HashedFile {
+    final byte[] hash;
+    final String path;
+
+    HashedFile(byte[] hash, String path) {
+        this.hash = hash;
+        this.path = path;
+    }
+
+    /**
+     * Hashes file, listed in input. Invalid paths get zero hash.
+     *
+     * @param file   line of input
+     * @param hasher hasher of files
+     * @return hashed file
+     */
+    static HashedFile of(String file, FileHasher hasher) {
+        try {
+            Path path = Paths.get(file);
+            return new HashedFile(hasher.calculateHash(path), path.toString());
+        } catch (InvalidPathException e) {
+            return new HashedFile(hasher.zero(), file);
+        }
+    }
+}
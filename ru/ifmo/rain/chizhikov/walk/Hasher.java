@@ -0,0 +1,22 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental hash function state. New instance is created for every hashed file.
+ */
+interface Hasher {
+    /**
+     * Consumes all remaining bytes of {@code buffer}.
+     *
+     * @param buffer next part of hashed data
+     */
+    void update(ByteBuffer buffer);
+
+    /**
+     * Finishes hashing.
+     *
+     * @return hash of all consumed data in big-endian order
+     */
+    byte[] digest();
+}
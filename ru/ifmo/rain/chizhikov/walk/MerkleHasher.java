@@ -0,0 +1,240 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Hashes large files as Merkle trees of fixed-size blocks.
+ * <p>
+ * Blocks are hashed in parallel on a dedicated {@link ForkJoinPool}. Leaves are plain hashes
+ * of blocks and every inner node is the hash of byte {@code 1} followed by hashes of its
+ * children; the last node of an odd level is moved to the next level as is. So the root of
+ * a file, which fits into one block, equals its plain hash.
+ * <p>
+ * If sidecar directory is set, block hashes of every file are saved there. When a file is
+ * hashed again, its block hashes are compared with the saved ones and byte ranges of changed,
+ * added and removed blocks are appended to {@value #CHANGES} file of sidecar directory.
+ * Every line of this file is {@code from-to path}: adjacent changed blocks are reported as
+ * one half-open range {@code [from, to)} of bytes, ending at the larger of old and new sizes.
+ */
+class MerkleHasher implements AutoCloseable {
+    private static final int MAGIC = 0x574d4b31;
+    private static final byte NODE_PREFIX = 1;
+    static final String CHANGES = "changes.txt";
+
+    private final HashAlgorithm algorithm;
+    private final int blockSize;
+    private final Path sidecars;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates Merkle hasher.
+     *
+     * @param algorithm hash algorithm of blocks and nodes
+     * @param blockSize size of block in bytes
+     * @param sidecars  directory for block hashes or {@code null} if they shouldn't be saved
+     * @param threads   number of threads, hashing blocks
+     */
+    MerkleHasher(HashAlgorithm algorithm, int blockSize, Path sidecars, int threads) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.algorithm = algorithm;
+        this.blockSize = blockSize;
+        this.sidecars = sidecars;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Calculates Merkle root of file.
+     *
+     * @param path    hashed file, used to name its sidecar
+     * @param channel opened channel of file
+     * @param size    size of file
+     * @return Merkle root
+     * @throws IOException if file can't be read
+     */
+    byte[] hash(Path path, FileChannel channel, long size) throws IOException {
+        int blocks = (int) Math.max(1, (size + blockSize - 1) / blockSize);
+        List<BlockTask> tasks = new ArrayList<>(blocks);
+        for (int i = 0; i < blocks; ++i) {
+            tasks.add(new BlockTask(channel, (long) i * blockSize, Math.min(blockSize, size - (long) i * blockSize)));
+        }
+
+        byte[][] leaves = new byte[blocks][];
+        try {
+            pool.submit(() -> ForkJoinTask.invokeAll(tasks)).get();
+            for (int i = 0; i < blocks; ++i) {
+                leaves[i] = tasks.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing blocks of " + path);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+
+        if (sidecars != null) {
+            updateSidecar(path, size, leaves);
+        }
+        return root(leaves);
+    }
+
+    private byte[] root(byte[][] level) {
+        while (level.length > 1) {
+            byte[][] next = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i + 1 < level.length; i += 2) {
+                Hasher hasher = algorithm.newHasher();
+                hasher.update(ByteBuffer.wrap(new byte[]{NODE_PREFIX}));
+                hasher.update(ByteBuffer.wrap(level[i]));
+                hasher.update(ByteBuffer.wrap(level[i + 1]));
+                next[i / 2] = hasher.digest();
+            }
+            if (level.length % 2 == 1) {
+                next[next.length - 1] = level[level.length - 1];
+            }
+            level = next;
+        }
+        return level[0];
+    }
+
+    private void updateSidecar(Path path, long size, byte[][] leaves) throws IOException {
+        Path sidecar = sidecarOf(path);
+        Sidecar previous = readSidecar(sidecar);
+        if (previous != null) {
+            reportChanges(path, previous, size, leaves);
+        }
+
+        Files.createDirectories(sidecars);
+        Path temporary = Files.createTempFile(sidecars, sidecar.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(algorithm.getName());
+                out.writeInt(blockSize);
+                out.writeLong(size);
+                out.writeInt(leaves.length);
+                for (byte[] leaf : leaves) {
+                    out.write(leaf);
+                }
+            }
+            Files.move(temporary, sidecar, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void reportChanges(Path path, Sidecar previous, long size, byte[][] leaves) throws IOException {
+        long end = Math.max(size, previous.size);
+        int blocks = Math.max(leaves.length, previous.leaves.length);
+        StringBuilder changes = new StringBuilder();
+        for (int i = 0; i < blocks; ) {
+            if (i < leaves.length && i < previous.leaves.length && Arrays.equals(previous.leaves[i], leaves[i])) {
+                ++i;
+                continue;
+            }
+            long from = (long) i * blockSize;
+            do {
+                ++i;
+            } while (i < blocks && (i >= leaves.length || i >= previous.leaves.length
+                    || !Arrays.equals(previous.leaves[i], leaves[i])));
+            changes.append(from).append('-').append(Math.min(end, (long) i * blockSize))
+                    .append(' ').append(path).append(System.lineSeparator());
+        }
+
+        if (changes.length() > 0) {
+            synchronized (this) {
+                Files.createDirectories(sidecars);
+                Files.writeString(sidecars.resolve(CHANGES), changes, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        }
+    }
+
+    private Sidecar readSidecar(Path sidecar) {
+        if (Files.notExists(sidecar)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (in.readInt() != MAGIC || !algorithm.getName().equals(in.readUTF()) || in.readInt() != blockSize) {
+                return null;
+            }
+            long size = in.readLong();
+            int count = in.readInt();
+            if (count < 0 || count > Files.size(sidecar) / algorithm.getLength()) {
+                return null;
+            }
+            byte[][] leaves = new byte[count][algorithm.getLength()];
+            for (byte[] leaf : leaves) {
+                in.readFully(leaf);
+            }
+            return new Sidecar(size, leaves);
+        } catch (IOException e) {
+            System.out.println("ERROR: Unable to read block hashes " + sidecar + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Path sidecarOf(Path path) {
+        Hasher hasher = HashAlgorithm.SHA256.newHasher();
+        hasher.update(ByteBuffer.wrap(path.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8)));
+        return sidecars.resolve(Walk.appendHex(new StringBuilder(), hasher.digest()).append(".merkle").toString());
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private static class Sidecar {
+        final long size;
+        final byte[][] leaves;
+
+        Sidecar(long size, byte[][] leaves) {
+            this.size = size;
+            this.leaves = leaves;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class BlockTask extends RecursiveTask<byte[]> {
+        private final FileChannel channel;
+        private final long position;
+        private final long length;
+
+        private BlockTask(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        protected byte[] compute() {
+            Hasher hasher = algorithm.newHasher();
+            try {
+                if (length > 0) {
+                    hasher.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return hasher.digest();
+        }
+    }
+}
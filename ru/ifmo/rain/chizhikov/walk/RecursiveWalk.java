@@ -0,0 +1,24 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+
+//java -p . -cp . -m info.kgeorgiy.java.advanced.walk RecursiveWalk ru.ifmo.rain.chizhikov.walk.RecursiveWalk
+//java ru.ifmo.rain.chizhikov.walk.RecursiveWalk -threads 8 input.txt output.txt
+
+public class RecursiveWalk {
+    private static final String[] OPTIONS = {"-hash", "-threads", "-buffer", "-map", "-cache", "-merkle", "-metrics", "-format"};
+
+    public static void main(String[] args) {
+        if (args != null) {
+            try {
+                WalkOptions options = WalkOptions.parse(args);
+                options.checkSupported(OPTIONS);
+                options.recursive = true;
+                Walk.walk(options);
+            } catch (IllegalArgumentException e) {
+                System.out.println("ERROR: " + e.getMessage());
+                System.out.println(WalkOptions.usage("RecursiveWalk", OPTIONS));
+            }
+        }
+    }
+
+}
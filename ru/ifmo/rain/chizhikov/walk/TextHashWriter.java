@@ -0,0 +1,34 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+/**
+ * Writes hashes as text lines of hexadecimal hash and path.
+ */
+class TextHashWriter implements HashWriter {
+    private final BufferedWriter writer;
+    private final StringBuilder line = new StringBuilder();
+    private char[] chars = new char[0];
+
+    TextHashWriter(BufferedWriter writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(byte[] hash, String file) throws IOException {
+        line.setLength(0);
+        Walk.appendHex(line, hash).append(' ').append(file);
+        if (chars.length < line.length()) {
+            chars = new char[2 * line.length()];
+        }
+        line.getChars(0, line.length(), chars, 0);
+        writer.write(chars, 0, line.length());
+        writer.newLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -5,39 +5,88 @@ import java.nio.file.*;
 
 
 //java -p . -cp . -m info.kgeorgiy.java.advanced.walk Walk ru.ifmo.rain.chizhikov.walk.Walk
+//java ru.ifmo.rain.chizhikov.walk.Walk -hash xxh64 -threads 8 -buffer 1048576 -map 67108864 input.txt output.txt
+//java ru.ifmo.rain.chizhikov.walk.Walk -hash xxh64 -format binary -sorted input.txt output.idx
+//java ru.ifmo.rain.chizhikov.walk.Walk -threads 4 -async 256 -small 4096 input.txt output.txt
+//java ru.ifmo.rain.chizhikov.walk.Walk -hash sha256 -merkle 16777216 -sidecar blocks input.txt output.txt
 
 public class Walk {
-    private static final int FNV_INIT_NUMBER = 0x811c9dc5;
-    private static final int FNV_PRIME_NUMBER = 0x01000193;
+    private static final String[] OPTIONS = {
+            "-hash", "-threads", "-buffer", "-map", "-cache", "-merkle", "-metrics", "-format", "-async"};
+    private static final int PENDING_PER_THREAD = 64;
+    private static final int SLOWEST_FILES = 10;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    static String formatLine(byte[] hash, String file) {
+        StringBuilder line = new StringBuilder(2 * hash.length + 1 + file.length());
+        return appendHex(line, hash).append(' ').append(file).toString();
+    }
+
+    static StringBuilder appendHex(StringBuilder builder, byte[] hash) {
+        for (byte b : hash) {
+            builder.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+        }
+        return builder;
+    }
 
-    private static int calculateHashOfFile(Path path) {
-        int current = FNV_INIT_NUMBER;
+    private static void writeHashes(BufferedReader reader, HashWriter writer, FileHasher hasher) throws IOException {
+        String file;
 
-        try (FileInputStream inputStream = new FileInputStream(path.toString())) {
+        while ((file = reader.readLine()) != null) {
+            writer.write(HashedFile.of(file, hasher));
+        }
+    }
 
-            byte[] buffer = new byte[1024];
-            int readingByte;
+    private static HashWriter newWriter(WalkOptions options, Path outPath) throws IOException {
+        if (options.binary) {
+            return new BinaryIndexWriter(outPath, options.algorithm.getLength(), options.sortedIndex);
+        }
+        return new TextHashWriter(Files.newBufferedWriter(outPath));
+    }
 
-            while ((readingByte = inputStream.read(buffer)) != -1) {
-                for (int i = 0; i < readingByte; ++i) {
-                    current *= FNV_PRIME_NUMBER;
-                    current ^= buffer[i] & 0xff;
+    private static boolean hashFiles(WalkOptions options, Path inputPath, Path outPath, FileHasher hasher) {
+        try (BufferedReader reader = Files.newBufferedReader(inputPath)) {
+            try (HashWriter writer = newWriter(options, outPath)) {
+                try {
+                    if (options.recursive) {
+                        new DirectoryWalker(hasher, options.threads).writeHashes(reader, writer);
+                    } else if (options.asyncReads > 0) {
+                        int window = Math.max(2 * options.asyncReads, options.threads * PENDING_PER_THREAD);
+                        new AsyncWalker(hasher, options.threads, options.smallFile, options.asyncReads, window)
+                                .writeHashes(reader, writer);
+                    } else if (options.threads > 1) {
+                        new WalkPipeline(hasher, options.threads, options.threads * PENDING_PER_THREAD)
+                                .writeHashes(reader, writer);
+                    } else {
+                        writeHashes(reader, writer, hasher);
+                    }
+                    return true;
+                } catch (IOException e) {
+                    System.out.println("ERROR: IOException: " + e.getMessage());
                 }
+            } catch (FileNotFoundException e) {
+                System.out.println("ERROR: Output file not found: " + e.getMessage());
+            } catch (SecurityException e) {
+                System.out.println("ERROR: SecurityException while working with output file: " + e.getMessage());
+            } catch (IOException e) {
+                System.out.println("ERROR: IOException while working with output file: " + e.getMessage());
             }
+        } catch (FileNotFoundException e) {
+            System.out.println("ERROR: Input file not found: " + e.getMessage());
+        } catch (SecurityException e) {
+            System.out.println("ERROR: SecurityException while working with input file: " + e.getMessage());
         } catch (IOException e) {
-            current = 0;
+            System.out.println("ERROR: IOException while working with input file: " + e.getMessage());
         }
-
-        return current;
+        return false;
     }
 
-
-    private static void walk(String input, String output) {
+    static void walk(WalkOptions options) {
         Path inputPath;
         Path outPath;
         try {
-            inputPath = Paths.get(input);
-            outPath = Paths.get(output);
+            inputPath = Paths.get(options.input);
+            outPath = Paths.get(options.output);
         } catch (InvalidPathException e) {
             System.out.println("ERROR: InvalidPathException: " + e.getMessage());
             return;
@@ -51,47 +100,68 @@ public class Walk {
             }
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(inputPath)) {
-            try (BufferedWriter writer = Files.newBufferedWriter(outPath)) {
-                try {
-                    String file;
-
-                    while ((file = reader.readLine()) != null) {
-                        try {
-                            Path path = Paths.get(file);
-
-                            writer.write(String.format("%08x %s", Walk.calculateHashOfFile(path), path.toString()));
-                            writer.newLine();
-                        } catch (InvalidPathException e) {
-                            writer.write(String.format("%08x %s", 0, file));
-                            writer.newLine();
-                        }
-                    }
-                } catch (IOException e) {
-                    System.out.println("ERROR: IOException: " + e.getMessage());
-                }
-            } catch (FileNotFoundException e) {
-                System.out.println("ERROR: Output file not found: " + e.getMessage());
-            } catch (SecurityException e) {
-                System.out.println("ERROR: SecurityException while working with output file: " + e.getMessage());
+        HashCache cache = null;
+        Path cachePath = null;
+        if (options.cacheFile != null) {
+            try {
+                cachePath = Paths.get(options.cacheFile);
+                cache = HashCache.load(cachePath, options.algorithm, options.hashScheme(), options.rehash);
+            } catch (InvalidPathException e) {
+                System.out.println("ERROR: Invalid path of hash cache: " + e.getMessage());
+                return;
             } catch (IOException e) {
-                System.out.println("ERROR: IOException while working with output file: " + e.getMessage());
+                System.out.println("ERROR: Unable to read hash cache, rehashing all files: " + e.getMessage());
+                cache = HashCache.empty(options.algorithm, options.hashScheme());
+            }
+        }
+
+        MerkleHasher merkle = null;
+        if (options.merkleBlock > 0) {
+            try {
+                Path sidecars = options.sidecarDirectory == null ? null : Paths.get(options.sidecarDirectory);
+                merkle = new MerkleHasher(options.algorithm, options.merkleBlock, sidecars, options.threads);
+            } catch (InvalidPathException e) {
+                System.out.println("ERROR: Invalid path of sidecar directory: " + e.getMessage());
+                return;
+            }
+        }
+
+        WalkMetrics metrics = null;
+        if (options.metricsFile != null) {
+            try {
+                metrics = new WalkMetrics(Paths.get(options.metricsFile), options.metricsInterval, SLOWEST_FILES);
+            } catch (InvalidPathException e) {
+                System.out.println("ERROR: Invalid path of metrics file: " + e.getMessage());
+                return;
+            }
+        }
+
+        boolean completed = hashFiles(options, inputPath, outPath, new FileHasher(options, cache, merkle, metrics));
+
+        if (merkle != null) {
+            merkle.close();
+        }
+        if (metrics != null) {
+            metrics.close();
+        }
+        if (cache != null && completed) {
+            try {
+                cache.save(cachePath);
+            } catch (IOException e) {
+                System.out.println("ERROR: Unable to write hash cache: " + e.getMessage());
             }
-        } catch (FileNotFoundException e) {
-            System.out.println("ERROR: Input file not found: " + e.getMessage());
-        } catch (SecurityException e) {
-            System.out.println("ERROR: SecurityException while working with input file: " + e.getMessage());
-        } catch (IOException e) {
-            System.out.println("ERROR: IOException while working with input file: " + e.getMessage());
         }
     }
 
     public static void main(String[] args) {
         if (args != null) {
-            if (args.length != 2 || args[0] == null || args[1] == null) {
-                System.out.println("ERROR: Invalid arguments");
-            } else {
-                walk(args[0], args[1]);
+            try {
+                WalkOptions options = WalkOptions.parse(args);
+                options.checkSupported(OPTIONS);
+                walk(options);
+            } catch (IllegalArgumentException e) {
+                System.out.println("ERROR: " + e.getMessage());
+                System.out.println(WalkOptions.usage("Walk", OPTIONS));
             }
         }
     }
@@ -0,0 +1,208 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput and latency metrics of hashing.
+ * <p>
+ * Latencies are collected into histograms with power-of-two buckets of microseconds,
+ * separately for every bucket of file sizes. Snapshots are appended to metrics file as
+ * JSON objects, one per line: periodically while walk is running and once at the end,
+ * with {@code "final": true}.
+ */
+class WalkMetrics implements AutoCloseable {
+    private static final long[] SIZE_LIMITS = {1L << 12, 1L << 16, 1L << 20, 1L << 24, 1L << 28, Long.MAX_VALUE};
+    private static final String[] SIZE_NAMES = {"<4K", "<64K", "<1M", "<16M", "<256M", ">=256M"};
+    private static final int LATENCY_BUCKETS = 40;
+
+    private final Path file;
+    private final int slowestCount;
+    private final long start = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder cached = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final AtomicLongArray latencies = new AtomicLongArray(SIZE_LIMITS.length * LATENCY_BUCKETS);
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final PriorityQueue<Sample> slowest = new PriorityQueue<>(Comparator.comparingLong((Sample s) -> s.nanos));
+    private volatile long slowestThreshold;
+    private final ScheduledExecutorService reporter;
+
+    /**
+     * Creates metrics, which are written to specified file.
+     *
+     * @param file         destination of snapshots
+     * @param interval     interval between snapshots in seconds, non-positive value disables them
+     * @param slowestCount number of slowest files to report
+     */
+    WalkMetrics(Path file, long interval, int slowestCount) {
+        this.file = file;
+        this.slowestCount = slowestCount;
+
+        if (interval > 0) {
+            reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(() -> report(false), interval, interval, TimeUnit.SECONDS);
+        } else {
+            reporter = null;
+        }
+    }
+
+    /**
+     * Records file, which was read and hashed.
+     *
+     * @param path  hashed file
+     * @param size  size of file
+     * @param nanos time of hashing
+     */
+    void recordFile(Path path, long size, long nanos) {
+        files.increment();
+        bytes.add(size);
+
+        int sizeBucket = 0;
+        while (size >= SIZE_LIMITS[sizeBucket]) {
+            ++sizeBucket;
+        }
+        long micros = Math.max(1, nanos / 1000);
+        int latencyBucket = Math.min(LATENCY_BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        latencies.incrementAndGet(sizeBucket * LATENCY_BUCKETS + latencyBucket);
+
+        if (nanos > slowestThreshold) {
+            synchronized (slowest) {
+                slowest.add(new Sample(path.toString(), size, nanos));
+                if (slowest.size() > slowestCount) {
+                    slowest.poll();
+                    slowestThreshold = slowest.peek().nanos;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records file, which hash was taken from cache.
+     */
+    void recordCached() {
+        cached.increment();
+    }
+
+    /**
+     * Records failure of hashing.
+     *
+     * @param e reason of failure
+     */
+    void recordError(Exception e) {
+        errors.computeIfAbsent(e.getClass().getSimpleName(), name -> new LongAdder()).increment();
+    }
+
+    /**
+     * Stops periodic snapshots and writes the final one.
+     */
+    @Override
+    public void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+        report(true);
+    }
+
+    private synchronized void report(boolean last) {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(snapshot(last));
+            writer.newLine();
+        } catch (IOException e) {
+            System.out.println("ERROR: Unable to write metrics: " + e.getMessage());
+        }
+    }
+
+    private String snapshot(boolean last) {
+        double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        long hashed = files.sum();
+        long read = bytes.sum();
+
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"final\":").append(last);
+        json.append(",\"elapsedMillis\":").append((long) (seconds * 1000));
+        json.append(",\"files\":").append(hashed);
+        json.append(",\"cachedFiles\":").append(cached.sum());
+        json.append(",\"bytes\":").append(read);
+        json.append(",\"filesPerSecond\":").append(String.format(Locale.ROOT, "%.1f", hashed / seconds));
+        json.append(",\"bytesPerSecond\":").append(String.format(Locale.ROOT, "%.1f", read / seconds));
+
+        json.append(",\"errors\":{");
+        String separator = "";
+        for (Map.Entry<String, LongAdder> error : new TreeMap<>(errors).entrySet()) {
+            json.append(separator).append(quote(error.getKey())).append(':').append(error.getValue().sum());
+            separator = ",";
+        }
+
+        json.append("},\"latencyMicros\":{");
+        separator = "";
+        for (int sizeBucket = 0; sizeBucket < SIZE_LIMITS.length; ++sizeBucket) {
+            json.append(separator).append(quote(SIZE_NAMES[sizeBucket])).append(":{");
+            separator = ",";
+            String bucketSeparator = "";
+            for (int latencyBucket = 0; latencyBucket < LATENCY_BUCKETS; ++latencyBucket) {
+                long count = latencies.get(sizeBucket * LATENCY_BUCKETS + latencyBucket);
+                if (count > 0) {
+                    json.append(bucketSeparator).append("\"<").append(2L << latencyBucket).append("\":").append(count);
+                    bucketSeparator = ",";
+                }
+            }
+            json.append('}');
+        }
+
+        json.append("},\"slowest\":[");
+        List<Sample> samples;
+        synchronized (slowest) {
+            samples = new ArrayList<>(slowest);
+        }
+        samples.sort(Comparator.comparingLong((Sample s) -> s.nanos).reversed());
+        separator = "";
+        for (Sample sample : samples) {
+            json.append(separator).append("{\"path\":").append(quote(sample.path))
+                    .append(",\"bytes\":").append(sample.size)
+                    .append(",\"micros\":").append(sample.nanos / 1000).append('}');
+            separator = ",";
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String quote(String string) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : string.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static class Sample {
+        final String path;
+        final long size;
+        final long nanos;
+
+        Sample(String path, long size, long nanos) {
+            this.path = path;
+            this.size = size;
+            this.nanos = nanos;
+        }
+    }
+}
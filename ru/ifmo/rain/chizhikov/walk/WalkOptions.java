@@ -0,0 +1,227 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.util.*;
+
+/**
+ * Command line options of {@link Walk}, {@link RecursiveWalk}, {@link DuplicateWalk} and {@link WatchWalk}.
+ * <p>
+ * Options: [-hash fnv32|fnv64|xxh64|sha256] [-threads number] [-buffer bytes] [-map bytes]
+ * [-cache file [-rehash]] [-merkle bytes [-sidecar directory]] [-debounce milliseconds]
+ * [-metrics file [-metrics-interval seconds]] [-format text|binary [-sorted]]
+ * [-async in-flight-reads [-small bytes]]. Nested options require their main option.
+ * Every program supports only some of options and rejects the others.
+ */
+class WalkOptions {
+    private static final Map<String, String> USAGE = new LinkedHashMap<>();
+    private static final Map<String, String> PARENT_OPTIONS = Map.of(
+            "-rehash", "-cache",
+            "-sidecar", "-merkle",
+            "-metrics-interval", "-metrics",
+            "-sorted", "-format",
+            "-small", "-async");
+
+    static {
+        USAGE.put("-hash", "[-hash fnv32|fnv64|xxh64|sha256]");
+        USAGE.put("-threads", "[-threads <number>]");
+        USAGE.put("-buffer", "[-buffer <bytes>]");
+        USAGE.put("-map", "[-map <bytes>]");
+        USAGE.put("-cache", "[-cache <file> [-rehash]]");
+        USAGE.put("-merkle", "[-merkle <bytes> [-sidecar <directory>]]");
+        USAGE.put("-debounce", "[-debounce <milliseconds>]");
+        USAGE.put("-metrics", "[-metrics <file> [-metrics-interval <seconds>]]");
+        USAGE.put("-format", "[-format text|binary [-sorted]]");
+        USAGE.put("-async", "[-async <in-flight reads> [-small <bytes>]]");
+    }
+
+    private final Set<String> specified = new HashSet<>();
+
+    HashAlgorithm algorithm;
+    int threads = 1;
+    int bufferSize = FileHasher.DEFAULT_BUFFER_SIZE;
+    long mappingThreshold = FileHasher.DEFAULT_MAPPING_THRESHOLD;
+    String input;
+    String output;
+    boolean recursive;
+    String cacheFile;
+    boolean rehash;
+    int merkleBlock;
+    String sidecarDirectory;
+    long debounce = 500;
+    String metricsFile;
+    long metricsInterval = 10;
+    boolean binary;
+    boolean sortedIndex;
+    int asyncReads;
+    int smallFile = 4096;
+
+    /**
+     * Returns usage message for specified program, which supports only specified options.
+     *
+     * @param program name of program
+     * @param options supported options
+     * @return usage message
+     */
+    static String usage(String program, String... options) {
+        StringBuilder usage = new StringBuilder("Usage: ").append(program);
+        for (String option : options) {
+            usage.append(' ').append(USAGE.get(option));
+        }
+        return usage.append(" <input> <output>").toString();
+    }
+
+    /**
+     * Checks that only specified options were given. Dependent options, like {@code -rehash},
+     * are supported together with their main option.
+     *
+     * @param options supported options
+     * @throws IllegalArgumentException if unsupported option was given
+     */
+    void checkSupported(String... options) {
+        Set<String> unsupported = new TreeSet<>();
+        for (String name : specified) {
+            unsupported.add(PARENT_OPTIONS.getOrDefault(name, name));
+        }
+        unsupported.removeAll(Arrays.asList(options));
+        if (!unsupported.isEmpty()) {
+            throw new IllegalArgumentException("Unsupported options: " + String.join(", ", unsupported));
+        }
+    }
+
+    /**
+     * Returns description of the way files are hashed, which identifies compatible hashes.
+     *
+     * @return name of hash scheme
+     */
+    String hashScheme() {
+        return merkleBlock > 0 ? algorithm.getName() + "/merkle-" + merkleBlock : algorithm.getName();
+    }
+
+    /**
+     * Parses command line arguments.
+     *
+     * @param args command line arguments
+     * @return parsed options
+     * @throws IllegalArgumentException if arguments are invalid
+     */
+    static WalkOptions parse(String[] args) {
+        return parse(args, HashAlgorithm.FNV32);
+    }
+
+    /**
+     * Parses command line arguments with specified default hash algorithm.
+     *
+     * @param args      command line arguments
+     * @param algorithm hash algorithm, used if {@code -hash} isn't specified
+     * @return parsed options
+     * @throws IllegalArgumentException if arguments are invalid
+     */
+    static WalkOptions parse(String[] args, HashAlgorithm algorithm) {
+        WalkOptions options = new WalkOptions();
+        options.algorithm = algorithm;
+        int i = 0;
+
+        while (i < args.length - 2) {
+            String name = args[i++];
+            if (name == null) {
+                throw new IllegalArgumentException("Arguments must be non-null");
+            }
+            options.specified.add(name);
+            if ("-rehash".equals(name)) {
+                options.rehash = true;
+                continue;
+            }
+            if ("-sorted".equals(name)) {
+                options.sortedIndex = true;
+                continue;
+            }
+
+            String value = args[i++];
+            if (value == null) {
+                throw new IllegalArgumentException("Arguments must be non-null");
+            }
+
+            try {
+                switch (name) {
+                    case "-hash":
+                        options.algorithm = HashAlgorithm.forName(value);
+                        break;
+                    case "-threads":
+                        options.threads = Integer.parseInt(value);
+                        break;
+                    case "-buffer":
+                        options.bufferSize = Integer.parseInt(value);
+                        break;
+                    case "-map":
+                        options.mappingThreshold = Long.parseLong(value);
+                        break;
+                    case "-merkle":
+                        options.merkleBlock = Integer.parseInt(value);
+                        break;
+                    case "-sidecar":
+                        options.sidecarDirectory = value;
+                        break;
+                    case "-debounce":
+                        options.debounce = Long.parseLong(value);
+                        break;
+                    case "-metrics":
+                        options.metricsFile = value;
+                        break;
+                    case "-metrics-interval":
+                        options.metricsInterval = Long.parseLong(value);
+                        break;
+                    case "-format":
+                        if (!"text".equals(value) && !"binary".equals(value)) {
+                            throw new IllegalArgumentException("Unknown output format: " + value);
+                        }
+                        options.binary = "binary".equals(value);
+                        break;
+                    case "-async":
+                        options.asyncReads = Integer.parseInt(value);
+                        break;
+                    case "-small":
+                        options.smallFile = Integer.parseInt(value);
+                        break;
+                    case "-cache":
+                        options.cacheFile = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value of " + name + ": " + value);
+            }
+        }
+
+        if (args.length - i != 2 || args[i] == null || args[i + 1] == null) {
+            throw new IllegalArgumentException("Invalid arguments");
+        }
+        if (options.threads <= 0 || options.bufferSize <= 0) {
+            throw new IllegalArgumentException("Number of threads and buffer size must be positive");
+        }
+        for (String name : options.specified) {
+            String parent = PARENT_OPTIONS.get(name);
+            if (parent != null && !options.specified.contains(parent)) {
+                throw new IllegalArgumentException("Option " + name + " requires " + parent);
+            }
+        }
+        if (options.asyncReads < 0 || options.smallFile <= 0) {
+            throw new IllegalArgumentException("Number of in-flight reads and small file size must be positive");
+        }
+        if (options.sortedIndex && !options.binary) {
+            throw new IllegalArgumentException("Option -sorted requires -format binary");
+        }
+        if (options.debounce <= 0) {
+            throw new IllegalArgumentException("Debounce interval must be positive");
+        }
+        if (options.merkleBlock < 0) {
+            throw new IllegalArgumentException("Merkle block size must be positive");
+        }
+        if (options.sidecarDirectory != null && options.merkleBlock == 0) {
+            throw new IllegalArgumentException("Option -sidecar requires -merkle");
+        }
+
+        options.input = args[i];
+        options.output = args[i + 1];
+        return options;
+    }
+}
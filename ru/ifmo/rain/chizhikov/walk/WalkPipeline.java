@@ -0,0 +1,162 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Three-stage pipeline: reader thread, pool of hashers and writer.
+ * <p>
+ * Stages are connected with bounded queues. Reader takes a permit for every line and writer
+ * returns it after the line is written, so at most {@code window} lines are queued, hashed
+ * or waiting for their turn to be written at any time, whatever the size of the input is.
+ * Writer restores input order in a ring buffer of {@code window} slots and writes all
+ * results, available at once, as one batch. If hashing of a file fails with an unexpected
+ * exception, writer stops at this file and reports the failure.
+ */
+class WalkPipeline {
+    private final FileHasher hasher;
+    private final int threads;
+    private final int window;
+
+    /**
+     * Creates pipeline with specified number of hashers and number of lines in flight.
+     *
+     * @param hasher  hasher of files
+     * @param threads number of hashing threads
+     * @param window  maximal number of lines, which were read, but not written yet
+     */
+    WalkPipeline(FileHasher hasher, int threads, int window) {
+        this.hasher = hasher;
+        this.threads = threads;
+        this.window = window;
+    }
+
+    /**
+     * Writes hashes of files, listed in {@code reader}, in order of input.
+     *
+     * @param reader source of paths, one per line
+     * @param writer destination of hashes
+     * @throws IOException if reading of input, hashing of a file or writing of output fails
+     */
+    void writeHashes(BufferedReader reader, HashWriter writer) throws IOException {
+        BlockingQueue<Task> tasks = new ArrayBlockingQueue<>(window + threads);
+        BlockingQueue<Task> results = new ArrayBlockingQueue<>(window + 1);
+        Semaphore permits = new Semaphore(window);
+        AtomicReference<IOException> readFailure = new AtomicReference<>();
+
+        ExecutorService hashers = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; ++i) {
+            hashers.submit(() -> hash(tasks, results));
+        }
+        Thread readerThread = new Thread(() -> read(reader, tasks, results, permits, readFailure));
+        readerThread.start();
+
+        try {
+            write(writer, results, permits);
+            IOException failure = readFailure.get();
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            readerThread.interrupt();
+            hashers.shutdownNow();
+        }
+    }
+
+    private void read(BufferedReader reader, BlockingQueue<Task> tasks, BlockingQueue<Task> results,
+                      Semaphore permits, AtomicReference<IOException> readFailure) {
+        long sequence = 0;
+        try {
+            String file;
+            while ((file = reader.readLine()) != null) {
+                permits.acquire();
+                tasks.put(new Task(sequence++, file));
+            }
+        } catch (IOException e) {
+            readFailure.set(e);
+        } catch (InterruptedException e) {
+            return;
+        }
+
+        try {
+            for (int i = 0; i < threads; ++i) {
+                tasks.put(new Task(-1, null));
+            }
+            results.put(new Task(sequence, null));
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void hash(BlockingQueue<Task> tasks, BlockingQueue<Task> results) {
+        try {
+            while (true) {
+                Task task = tasks.take();
+                if (task.file == null) {
+                    return;
+                }
+                try {
+                    task.result = HashedFile.of(task.file, hasher);
+                } catch (Throwable e) {
+                    task.failure = e;
+                }
+                results.put(task);
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void write(HashWriter writer, BlockingQueue<Task> results, Semaphore permits) throws IOException {
+        Task[] pending = new Task[window];
+        List<Task> batch = new ArrayList<>(window + 1);
+        long next = 0;
+        long total = -1;
+
+        try {
+            while (total < 0 || next < total) {
+                batch.add(results.take());
+                results.drainTo(batch);
+
+                for (Task task : batch) {
+                    if (task.file == null) {
+                        total = task.sequence;
+                    } else {
+                        pending[(int) (task.sequence % window)] = task;
+                    }
+                }
+                batch.clear();
+
+                int slot;
+                while (pending[slot = (int) (next % window)] != null) {
+                    Throwable failure = pending[slot].failure;
+                    if (failure != null) {
+                        throw new IOException("Unable to calculate hash: " + failure.getMessage(), failure);
+                    }
+                    writer.write(pending[slot].result);
+                    pending[slot] = null;
+                    ++next;
+                    permits.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for hashes");
+        }
+    }
+
+    private static class Task {
+        final long sequence;
+        final String file;
+        HashedFile result;
+        Throwable failure;
+
+        Task(long sequence, String file) {
+            this.sequence = sequence;
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package ru.ifmo.rain.chizhikov.walk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+
+//java ru.ifmo.rain.chizhikov.walk.WatchWalk -threads 4 -debounce 500 input.txt output.txt
+
+/**
+ * Keeps output of {@link RecursiveWalk} up to date with files and directories, listed in input file.
+ * <p>
+ * All listed paths are hashed once, then their directories are registered with
+ * {@link WatchService}. Contents of every directory are kept in memory, so only files,
+ * reported as changed, are hashed again and only directories, reported as changed, are
+ * listed again. Events are collected until no new events arrive for the debounce interval,
+ * and then output is rewritten atomically. Output is the same as of {@link RecursiveWalk}:
+ * paths start with paths of input and entries of every directory are written in
+ * lexicographic order, each subdirectory at its own position. The only exception are
+ * output file and its temporary copy, which are never listed.
+ * <p>
+ * Usage: WatchWalk [-hash fnv32|fnv64|xxh64|sha256] [-threads number] [-buffer bytes]
+ * [-map bytes] [-debounce milliseconds] input output. Options mean the same as for
+ * {@link Walk}, other options of {@link Walk} are rejected. Debounce interval is 500
+ * milliseconds by default. Runs until interrupted.
+ */
+public class WatchWalk {
+    private static final long MAX_DELAY_FACTOR = 20;
+    private static final String[] OPTIONS = {"-hash", "-threads", "-buffer", "-map", "-debounce"};
+
+    private final FileHasher hasher;
+    private final ForkJoinPool pool;
+    private final WatchService watcher;
+    private final Path output;
+    private final Path temporary;
+    private final List<String> inputs;
+    private final Set<Path> roots = new HashSet<>();
+    private final Set<Path> listed = new HashSet<>();
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    private final Map<Path, NavigableSet<Path>> directories = new HashMap<>();
+    private final Set<Path> unreadable = new HashSet<>();
+    private final Map<Path, byte[]> hashes = new HashMap<>();
+
+    private WatchWalk(FileHasher hasher, ForkJoinPool pool, WatchService watcher, Path output, List<String> inputs) {
+        this.hasher = hasher;
+        this.pool = pool;
+        this.watcher = watcher;
+        this.output = output.toAbsolutePath().normalize();
+        this.temporary = this.output.resolveSibling("." + output.getFileName() + "-watchwalk.tmp");
+        this.inputs = inputs;
+    }
+
+    public static void main(String[] args) {
+        if (args == null) {
+            return;
+        }
+
+        WalkOptions options;
+        Path inputPath;
+        Path outPath;
+        try {
+            options = WalkOptions.parse(args);
+            options.checkSupported(OPTIONS);
+            inputPath = Paths.get(options.input);
+            outPath = Paths.get(options.output);
+        } catch (IllegalArgumentException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.out.println(WalkOptions.usage("WatchWalk", OPTIONS));
+            return;
+        }
+
+        FileHasher hasher = new FileHasher(options, null, null, null);
+        ForkJoinPool pool = new ForkJoinPool(options.threads);
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            List<String> inputs = Files.readAllLines(inputPath);
+            new WatchWalk(hasher, pool, watcher, outPath, inputs).run(options.debounce);
+        } catch (IOException e) {
+            System.out.println("ERROR: IOException: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void run(long debounce) throws IOException, InterruptedException {
+        rescan();
+        write();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            Set<Path> changed = new HashSet<>();
+            boolean overflow = collect(watcher.take(), changed);
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounce * MAX_DELAY_FACTOR);
+            WatchKey key;
+            while (System.nanoTime() < deadline && (key = watcher.poll(debounce, TimeUnit.MILLISECONDS)) != null) {
+                overflow |= collect(key, changed);
+            }
+
+            if (overflow) {
+                rescan();
+            } else if (!changed.isEmpty()) {
+                update(changed);
+            } else {
+                continue;
+            }
+            write();
+        }
+    }
+
+    private boolean collect(WatchKey key, Set<Path> changed) {
+        Path directory = keys.get(key);
+        boolean overflow = false;
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                overflow = true;
+            } else if (directory != null) {
+                Path path = directory.resolve((Path) event.context());
+                if (isTracked(path)) {
+                    changed.add(path);
+                }
+            }
+        }
+
+        if (!key.reset()) {
+            keys.remove(key);
+            if (directory != null) {
+                changed.add(directory);
+            }
+        }
+        return overflow;
+    }
+
+    private void rescan() throws IOException, InterruptedException {
+        keys.keySet().forEach(WatchKey::cancel);
+        keys.clear();
+        roots.clear();
+        listed.clear();
+        directories.clear();
+        unreadable.clear();
+        hashes.clear();
+
+        Set<Path> files = new HashSet<>();
+        Set<Path> parents = new HashSet<>();
+        for (String input : inputs) {
+            Path path;
+            try {
+                path = Paths.get(input).toAbsolutePath().normalize();
+            } catch (InvalidPathException e) {
+                continue;
+            }
+
+            if (isDirectory(path)) {
+                roots.add(path);
+                scan(path, files);
+            } else {
+                listed.add(path);
+                files.add(path);
+                Path parent = path.getParent();
+                if (parent != null && parents.add(parent) && isDirectory(parent)) {
+                    watch(parent);
+                }
+            }
+        }
+
+        hash(files);
+    }
+
+    private void update(Set<Path> changed) throws IOException, InterruptedException {
+        Set<Path> files = new HashSet<>();
+        for (Path path : changed) {
+            if (!isTracked(path)) {
+                continue;
+            }
+
+            if (Files.notExists(path, LinkOption.NOFOLLOW_LINKS)) {
+                remove(path);
+            } else if (isUnderRoot(path) && isDirectory(path)) {
+                if (isKnownDirectory(path)) {
+                    relist(path, files);
+                } else {
+                    remove(path);
+                    scan(path, files);
+                }
+                addEntry(path);
+            } else {
+                if (isKnownDirectory(path)) {
+                    remove(path);
+                }
+                files.add(path);
+                addEntry(path);
+            }
+        }
+
+        hash(files);
+    }
+
+    private void scan(Path directory, Set<Path> files) {
+        watch(directory);
+        List<Path> names = list(directory);
+        if (names == null) {
+            unreadable.add(directory);
+            return;
+        }
+
+        directories.put(directory, new TreeSet<>(names));
+        for (Path name : names) {
+            add(directory.resolve(name), files);
+        }
+    }
+
+    private void relist(Path directory, Set<Path> files) {
+        watch(directory);
+        List<Path> list = list(directory);
+        NavigableSet<Path> names = list == null ? Collections.emptyNavigableSet() : new TreeSet<>(list);
+        NavigableSet<Path> old = directories.getOrDefault(directory, Collections.emptyNavigableSet());
+        for (Path name : new ArrayList<>(old)) {
+            if (!names.contains(name)) {
+                remove(directory.resolve(name));
+            }
+        }
+
+        if (list == null) {
+            directories.remove(directory);
+            unreadable.add(directory);
+            return;
+        }
+
+        unreadable.remove(directory);
+        directories.put(directory, names);
+        for (Path name : names) {
+            if (!old.contains(name)) {
+                add(directory.resolve(name), files);
+            }
+        }
+    }
+
+    private void add(Path path, Set<Path> files) {
+        if (isDirectory(path)) {
+            scan(path, files);
+        } else {
+            files.add(path);
+        }
+    }
+
+    private void remove(Path path) {
+        hashes.remove(path);
+        unreadable.remove(path);
+        NavigableSet<Path> names = directories.remove(path);
+        if (names != null) {
+            for (Path name : names) {
+                remove(path.resolve(name));
+            }
+        }
+
+        NavigableSet<Path> siblings = path.getParent() == null ? null : directories.get(path.getParent());
+        if (siblings != null) {
+            siblings.remove(path.getFileName());
+        }
+    }
+
+    private void addEntry(Path path) {
+        NavigableSet<Path> siblings = path.getParent() == null ? null : directories.get(path.getParent());
+        if (siblings != null) {
+            siblings.add(path.getFileName());
+        }
+    }
+
+    private void hash(Set<Path> files) throws IOException, InterruptedException {
+        Map<Path, byte[]> updated = new ConcurrentHashMap<>();
+        try {
+            pool.submit(() -> files.parallelStream()
+                    .forEach(path -> updated.put(path, hasher.calculateHash(path)))).get();
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to hash files: " + e.getCause().getMessage(), e.getCause());
+        }
+        hashes.putAll(updated);
+    }
+
+    private void write() throws IOException {
+        Files.createDirectories(output.getParent());
+
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary)) {
+                for (String input : inputs) {
+                    Path path;
+                    try {
+                        path = Paths.get(input);
+                    } catch (InvalidPathException e) {
+                        writeLine(writer, hasher.zero(), input);
+                        continue;
+                    }
+
+                    Path absolute = path.toAbsolutePath().normalize();
+                    if (isKnownDirectory(absolute)) {
+                        writeDirectory(writer, path, absolute);
+                    } else {
+                        writeLine(writer, hashes.get(absolute), path.toString());
+                    }
+                }
+            }
+
+            try {
+                Files.move(temporary, output, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void writeDirectory(BufferedWriter writer, Path path, Path absolute) throws IOException {
+        NavigableSet<Path> names = directories.get(absolute);
+        if (names == null) {
+            writeLine(writer, null, path.toString());
+            return;
+        }
+
+        for (Path name : names) {
+            Path entry = absolute.resolve(name);
+            if (isKnownDirectory(entry)) {
+                writeDirectory(writer, path.resolve(name), entry);
+            } else {
+                writeLine(writer, hashes.get(entry), path.resolve(name).toString());
+            }
+        }
+    }
+
+    private void writeLine(BufferedWriter writer, byte[] hash, String file) throws IOException {
+        writer.write(Walk.formatLine(hash == null ? hasher.zero() : hash, file));
+        writer.newLine();
+    }
+
+    private boolean isTracked(Path path) {
+        return !isOutput(path) && (listed.contains(path) || isUnderRoot(path));
+    }
+
+    private boolean isOutput(Path path) {
+        return path.equals(output) || path.equals(temporary);
+    }
+
+    private boolean isUnderRoot(Path path) {
+        return roots.stream().anyMatch(path::startsWith);
+    }
+
+    private boolean isKnownDirectory(Path path) {
+        return directories.containsKey(path) || unreadable.contains(path);
+    }
+
+    private void watch(Path directory) {
+        try {
+            keys.put(directory.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), directory);
+        } catch (IOException e) {
+            System.out.println("ERROR: Unable to watch " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private List<Path> list(Path directory) {
+        List<Path> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                if (!isOutput(entry)) {
+                    names.add(entry.getFileName());
+                }
+            }
+            return names;
+        } catch (IOException | DirectoryIteratorException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static boolean isDirectory(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isDirectory();
+        } catch (IOException | SecurityException e) {
+            return false;
+        }
+    }
+}